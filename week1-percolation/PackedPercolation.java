@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+//PackedPercolation is an alternative to Percolation for grids too large for its per-site arrays.
+//Open cells are kept as single bits packed into long words, and the union-find parents and ranks live in
+//PackedStores indexed by long, optionally outside of the heap, so grids may hold billions of sites.
+//A grid can also be mapped from a file, so every open is saved as it happens and a restarted job picks the
+//grid back up from the file without rebuilding it.
+//Cells use the same 1D layout as Percolation, and as there, each root remembers whether its component touches the
+//top or bottom row instead of joining virtual top and bottom cells, so isFull gives the same backwash free answers.
+public class PackedPercolation {
+	
+	//Marks a PackedPercolation grid file, whose header holds this and the grid length
+	//Files from before the root flags held virtual cells and are refused by the changed magic
+	private static final int FILE_MAGIC = 0x50504553;
+	private static final int FILE_HEADER_BYTES = 16;
+	
+	//Flags kept in the top bits of a root's rank byte, the rank being at most the log2 of the cell count, under 64
+	private static final long TOP = 0x40;
+	private static final long BOTTOM = 0x80;
+	private static final long RANK_MASK = 0x3F;
+	
+	//The length of one side of the square grid
+	private final int gridLength;
+	
+	//Open flags, one bit per cell, 64 cells to a word
+	private final PackedStore openWords;
+	
+	//Union-find parent of each cell stored as parent + 1, so the zero filled store starts with every cell a root
+	private final PackedStore parents;
+	
+	//Union-find rank of each root in the low bits, and whether its component touches the top or bottom row
+	private final PackedStore rootStates;
+	
+	//Set once any component touches both the top and bottom row
+	private boolean percolates;
+	
+	//Constructor, accepts in length of grid and keeps the grid on the heap
+	public PackedPercolation(int gridLength) {
+		this(gridLength, false);
+	}
+	
+	//Constructor, accepts in length of grid and whether to keep the grid in memory outside of the heap
+	public PackedPercolation(int gridLength, boolean offHeap) {
+		this(gridLength,
+				new PackedStore(openWordCount(gridLength), 8, offHeap),
+				new PackedStore(cellCount(gridLength), parentWidth(gridLength), offHeap),
+				new PackedStore(cellCount(gridLength), 1, offHeap));
+	}
+	
+	private PackedPercolation(int gridLength, PackedStore openWords, PackedStore parents, PackedStore rootStates) {
+		this.gridLength = gridLength;
+		this.openWords = openWords;
+		this.parents = parents;
+		this.rootStates = rootStates;
+		
+		//A grid mapped from a file may already percolate, which shows on the roots of its top row
+		for(long cell = 0; cell < gridLength && !percolates; cell++) {
+			if (isOpenCell(cell) && spans(find(cell))) {
+				percolates = true;
+			}
+		}
+	}
+	
+	//Returns a grid mapped from fileName, accepting in length of grid. A new or empty file starts a grid with every
+	//cell closed, while a file already holding a grid of that length carries on from the cells opened in it.
+	public static PackedPercolation fromFile(String fileName, int gridLength) throws IOException {
+		long cellCount = cellCount(gridLength);
+		
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+			FileChannel channel = file.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.nativeOrder());
+			
+			if (file.length() == 0) {
+				header.putInt(FILE_MAGIC).putInt(gridLength).flip();
+				while(header.hasRemaining()) {
+					channel.write(header, header.position());
+				}
+				
+				//Force the header out now, as checkpoint only forces the mappings after it
+				channel.force(true);
+			} else {
+				channel.read(header, 0);
+				header.flip();
+				if (header.remaining() < FILE_HEADER_BYTES || header.getInt() != FILE_MAGIC) {
+					throw new IOException(fileName + " is not a PackedPercolation grid");
+				}
+				if (header.getInt() != gridLength) {
+					throw new IllegalArgumentException("Grid in " + fileName + " has a different length");
+				}
+			}
+			
+			//The mappings stay valid once the file is closed
+			PackedStore openWords = new PackedStore(channel, FILE_HEADER_BYTES, openWordCount(gridLength), 8);
+			long parentsOffset = FILE_HEADER_BYTES + openWords.byteSize();
+			PackedStore parents = new PackedStore(channel, parentsOffset, cellCount, parentWidth(gridLength));
+			PackedStore rootStates = new PackedStore(channel, parentsOffset + parents.byteSize(), cellCount, 1);
+			
+			return new PackedPercolation(gridLength, openWords, parents, rootStates);
+		}
+	}
+	
+	//Writes every change to a grid mapped from a file out to the file, so it survives the machine going down.
+	//Grids not mapped from a file are left as they are.
+	public void checkpoint() {
+		openWords.force();
+		parents.force();
+		rootStates.force();
+	}
+	
+	//Open method will open a specific cell and, if appropriate unions it to open cardinal neighbours
+	//i and j are the coordinates of cell in the grid, (1,1) being the top left cell
+	public void open(int i, int j) {
+		long arrayIndex = getIndexFromCoords(i, j);
+		if (isOpenCell(arrayIndex)) {
+			return;
+		}
+		
+		setOpen(arrayIndex);
+		
+		//Instead of virtual top and bottom cells, the new root remembers which of those rows it touches
+		long flags = 0;
+		if (j == 1) {
+			flags |= TOP;
+		}
+		if (j == gridLength) {
+			flags |= BOTTOM;
+		}
+		rootStates.set(arrayIndex, flags);
+		
+		//check cell above and union if also open
+		if (j > 1 && isOpenCell(arrayIndex - gridLength)) {
+			union(arrayIndex, arrayIndex - gridLength);
+		}
+		
+		//check cell below and union if also open
+		if (j < gridLength && isOpenCell(arrayIndex + gridLength)) {
+			union(arrayIndex, arrayIndex + gridLength);
+		}
+		
+		//check cell to the left and union if also open
+		if (i > 1 && isOpenCell(arrayIndex - 1)) {
+			union(arrayIndex, arrayIndex - 1);
+		}
+		
+		//check cell to the right and union if also open
+		if (i < gridLength && isOpenCell(arrayIndex + 1)) {
+			union(arrayIndex, arrayIndex + 1);
+		}
+		
+		if (spans(find(arrayIndex))) {
+			percolates = true;
+		}
+	}
+	
+	//Returns true if the cell at coordinates (i,j) is open, false if it is closed
+	public boolean isOpen(int i, int j) {
+		return isOpenCell(getIndexFromCoords(i, j));
+	}
+	
+	//Returns true if the cell at (i,j) is open and its component touches the top row, false if it does not
+	//Bottom row connections are kept on the root apart from top ones, so a full bottom does not backwash
+	public boolean isFull(int i, int j) {
+		long arrayIndex = getIndexFromCoords(i, j);
+		return isOpenCell(arrayIndex) && (rootStates.get(find(arrayIndex)) & TOP) != 0;
+	}
+	
+	//Returns true if the grid can be percolated, i.e. there is a component touching the top and bottom rows
+	public boolean percolates() {
+		return percolates;
+	}
+	
+	//Returns true if the component with this root touches both the top and bottom row
+	private boolean spans(long root) {
+		return (rootStates.get(root) & (TOP | BOTTOM)) == (TOP | BOTTOM);
+	}
+	
+	//Returns true if the open bit of the cell at arrayIndex is set
+	private boolean isOpenCell(long arrayIndex) {
+		return (openWords.get(arrayIndex >>> 6) & (1L << arrayIndex)) != 0;
+	}
+	
+	//Sets the open bit of the cell at arrayIndex
+	private void setOpen(long arrayIndex) {
+		long wordIndex = arrayIndex >>> 6;
+		openWords.set(wordIndex, openWords.get(wordIndex) | (1L << arrayIndex));
+	}
+	
+	//Returns the union-find parent of a cell
+	private long parentOf(long cell) {
+		long stored = parents.get(cell);
+		return stored == 0 ? cell : stored - 1;
+	}
+	
+	//Returns the root of a cell, pointing every other cell on the way at its grandparent (path halving)
+	private long find(long cell) {
+		while (true) {
+			long parent = parentOf(cell);
+			if (parent == cell) {
+				return cell;
+			}
+			
+			long grandparent = parentOf(parent);
+			if (grandparent != parent) {
+				parents.set(cell, grandparent + 1);
+			}
+			cell = grandparent;
+		}
+	}
+	
+	//Joins the components of two cells, hanging the lower ranked root under the other
+	//The root left on top takes the top and bottom flags of both
+	private void union(long first, long second) {
+		long firstRoot = find(first);
+		long secondRoot = find(second);
+		
+		if (firstRoot == secondRoot) {
+			return;
+		}
+		
+		long firstState = rootStates.get(firstRoot);
+		long secondState = rootStates.get(secondRoot);
+		long flags = (firstState | secondState) & (TOP | BOTTOM);
+		long firstRank = firstState & RANK_MASK;
+		long secondRank = secondState & RANK_MASK;
+		
+		if (firstRank < secondRank) {
+			parents.set(firstRoot, secondRoot + 1);
+			rootStates.set(secondRoot, secondRank | flags);
+		} else {
+			parents.set(secondRoot, firstRoot + 1);
+			rootStates.set(firstRoot, (firstRank == secondRank ? firstRank + 1 : firstRank) | flags);
+		}
+	}
+	
+	//Returns the number of cells for a grid of this length
+	private static long cellCount(int gridLength) {
+		if (gridLength <= 0) {
+			throw new IllegalArgumentException("Grid length must be a positive integer greater than 0");
+		}
+		return (long) gridLength * gridLength;
+	}
+	
+	//Returns the number of words needed for one open bit per cell
+	private static long openWordCount(int gridLength) {
+		return (cellCount(gridLength) + 63) >>> 6;
+	}
+	
+	//Returns the bytes per stored parent, parents up to 2^32 - 1 fit an unsigned int and beyond need a full long
+	private static int parentWidth(int gridLength) {
+		return cellCount(gridLength) <= 0xFFFFFFFFL ? 4 : 8;
+	}
+	
+	//checks the coordinates (i,j) are within the grid
+	private void checkForValidIndex(int i, int j) {
+		if (i <= 0
+				|| j <= 0
+				|| i > gridLength
+				|| j > gridLength) {
+			throw new IndexOutOfBoundsException("Attempting to access a cell outside of the grid");
+		}
+	}
+	
+	//converts the 2D coordinate (i,j) into the equivalent 1D index, row by row from the top left cell at 0
+	private long getIndexFromCoords(int i, int j) {
+		checkForValidIndex(i, j);
+		return (long) (j - 1) * gridLength + (i - 1);
+	}
+}
@@ -0,0 +1,127 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+//PackedStore is a fixed length array of unsigned integers, each 1, 4 or 8 bytes wide, addressed by a long index.
+//Its bytes are split over several ByteBuffer chunks so it can hold more entries than a Java array, and the
+//chunks are either allocated on the heap, outside of it when direct, or mapped from a region of a file so the
+//entries are saved in the file as they are written. New stores, and new regions of a file, are filled with zeros.
+final class PackedStore {
+	
+	//Each chunk holds 2^CHUNK_BITS bytes, a multiple of every entry width so no entry straddles two chunks
+	private static final int CHUNK_BITS = 30;
+	private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+	
+	//The number of entries in the store
+	private final long length;
+	
+	//Bytes per entry, and its log2 to turn an index into a byte offset
+	private final int width;
+	private final int widthShift;
+	
+	//The memory holding the entries
+	private final ByteBuffer[] chunks;
+	
+	//Constructor, accepts the number of entries, the bytes per entry and whether to allocate outside the heap
+	PackedStore(long length, int width, boolean direct) {
+		this(length, width, new ByteBuffer[chunkCount(length, width)]);
+		
+		long bytes = byteSize();
+		for(int c = 0; c < chunks.length; c++) {
+			int chunkBytes = (int) Math.min(1L << CHUNK_BITS, bytes - ((long) c << CHUNK_BITS));
+			ByteBuffer chunk = direct ? ByteBuffer.allocateDirect(chunkBytes) : ByteBuffer.allocate(chunkBytes);
+			chunks[c] = chunk.order(ByteOrder.nativeOrder());
+		}
+	}
+	
+	//Constructor, accepts a channel open for reading and writing, the byte offset of the store in its file, the
+	//number of entries and the bytes per entry. The file is grown to fit if needed, and entries already in that
+	//region of the file are kept, so a store mapped from the same region again carries on where it stopped.
+	PackedStore(FileChannel channel, long offset, long length, int width) throws IOException {
+		this(length, width, new ByteBuffer[chunkCount(length, width)]);
+		
+		long bytes = byteSize();
+		for(int c = 0; c < chunks.length; c++) {
+			long chunkOffset = (long) c << CHUNK_BITS;
+			long chunkBytes = Math.min(1L << CHUNK_BITS, bytes - chunkOffset);
+			chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, offset + chunkOffset, chunkBytes)
+					.order(ByteOrder.nativeOrder());
+		}
+	}
+	
+	private PackedStore(long length, int width, ByteBuffer[] chunks) {
+		this.length = length;
+		this.width = width;
+		this.widthShift = Integer.numberOfTrailingZeros(width);
+		this.chunks = chunks;
+	}
+	
+	//Checks the length and width of a store, returning the number of chunks it needs
+	private static int chunkCount(long length, int width) {
+		if (length < 0) {
+			throw new IllegalArgumentException("Store length cannot be negative");
+		}
+		if (width != 1 && width != 4 && width != 8) {
+			throw new IllegalArgumentException("Entry width must be 1, 4 or 8 bytes");
+		}
+		
+		long bytes = length * width;
+		return (int) ((bytes + CHUNK_MASK) >>> CHUNK_BITS);
+	}
+	
+	//Returns the number of entries in the store
+	long length() {
+		return length;
+	}
+	
+	//Returns the number of bytes the store takes up
+	long byteSize() {
+		return length << widthShift;
+	}
+	
+	//Writes any changes to a store mapped from a file out to the file
+	void force() {
+		for(ByteBuffer chunk : chunks) {
+			if (chunk instanceof MappedByteBuffer) {
+				((MappedByteBuffer) chunk).force();
+			}
+		}
+	}
+	
+	//Returns the entry at index, read as an unsigned value
+	long get(long index) {
+		long offset = index << widthShift;
+		ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+		int position = (int) (offset & CHUNK_MASK);
+		
+		switch (width) {
+			case 1:
+				return chunk.get(position) & 0xFFL;
+			case 4:
+				return chunk.getInt(position) & 0xFFFFFFFFL;
+			default:
+				return chunk.getLong(position);
+		}
+	}
+	
+	//Sets the entry at index, keeping only the low bytes of value that fit the entry width
+	void set(long index, long value) {
+		long offset = index << widthShift;
+		ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+		int position = (int) (offset & CHUNK_MASK);
+		
+		switch (width) {
+			case 1:
+				chunk.put(position, (byte) value);
+				break;
+			case 4:
+				chunk.putInt(position, (int) value);
+				break;
+			default:
+				chunk.putLong(position, value);
+				break;
+		}
+	}
+}
@@ -1,92 +1,320 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 //Percolation class represents a 2D grid of cells that can be in an open or closed state.
 //Its purpose is to be able to tell if a certain system percolates, i.e. water poured in the top can reach the bottom.
 public class Percolation {
 	
+	//Cell state flags, kept for every cell but only meaningful for TOP and BOTTOM on the root of a component
+	private static final byte OPEN = 1;
+	private static final byte TOP = 2;
+	private static final byte BOTTOM = 4;
+	
+	//Marks a Percolation checkpoint file, whose header holds this, the grid length and the component counters
+	private static final int CHECKPOINT_MAGIC = 0x50455243;
+	private static final int CHECKPOINT_HEADER_BYTES = 20;
+	
+	//The most cells copied through one mapping of a checkpoint file, keeping each mapping under 2GB
+	private static final int CHECKPOINT_CELLS_PER_MAPPING = 1 << 28;
+	
 	//The length of one side of the squire grid
 	private int gridLength;
 	
-	//Keep track of which cells are open
-	private boolean[] openCells;
+	//Keep track of which cells are open, and for component roots whether the component touches the top or bottom row
+	private byte[] cellState;
 	
-	//The quick union algorithm
-	private WeightedQuickUnionUF unionAlgo;
+	//Union-find forest over the open cells, a root holds minus the size of its component, any other cell its parent
+	private int[] parent;
 	
-	//Index of virtual top cell
-	private int virtualTopCell;
+	//Set once any component touches both the top and bottom row
+	private boolean percolates;
 	
-	//Index of virtual bottom cell
-	private int virtualBottomCell;
+	//The size of the largest component, and the total size of the components touching both the top and bottom row
+	private int largestComponentSize;
+	private int spanningComponentSize;
 	
 	//Constructor, accepts in length of grid
 	public Percolation(int gridLength) {
 		this.gridLength = gridLength;
-		this.virtualTopCell = 0;
-		this.virtualBottomCell = gridLength * gridLength + 1;
 		
-		this.openCells = new boolean[virtualBottomCell + 1];
-		this.unionAlgo = new WeightedQuickUnionUF(virtualBottomCell + 1);
-		
-		//Open the virtual top and bottom cells
-		openCells[virtualTopCell] = true;
-		openCells[virtualBottomCell] = true;
+		this.cellState = new byte[gridLength * gridLength];
+		this.parent = new int[gridLength * gridLength];
 	}
 	
 	//Open method will open a specific cell and, if appropriate unions it to open cardinal neighbours
 	//i and j are the coordinates of cell in the grid, (1,1) being the top left cell
 	public void open(int i, int j) {
-		int arrayIndex = getIndexFromCoords(i, j);
-		
-		openCells[arrayIndex] = true;
+		openSite(getIndexFromCoords(i, j));
+	}
+	
+	//Opens every cell in sites, given as indices counted row by row from 0 for the top left cell
+	//i.e. (j - 1) * gridLength + (i - 1) for the cell at (i,j)
+	public void open(int[] sites) {
+		int cellCount = cellState.length;
 		
-		//check cell above and union if also open
-		if (j == 1){
-			unionAlgo.union(arrayIndex, virtualTopCell);
-		} else {
-			if (openCells[arrayIndex - gridLength]) {
-				unionAlgo.union(arrayIndex, arrayIndex - gridLength);
+		for(int k = 0; k < sites.length; k++) {
+			if (sites[k] < 0 || sites[k] >= cellCount) {
+				throw new IndexOutOfBoundsException("Attempting to access a cell outside of the grid");
 			}
+			openSite(sites[k]);
+		}
+	}
+	
+	//Opens the cell at an index already produced by getIndexFromCoords, skipping the bounds check
+	void openSite(int arrayIndex) {
+		if (cellState[arrayIndex] != 0) {
+			return;
 		}
 		
-		//check cell below and union if also open
-		if (j == gridLength) {
-			unionAlgo.union(arrayIndex, virtualBottomCell);
-		} else {
-			if(openCells[arrayIndex + gridLength]) {
-				unionAlgo.union(arrayIndex, arrayIndex + gridLength);
-			}
+		int row = arrayIndex / gridLength;
+		int column = arrayIndex - row * gridLength;
+		
+		//Instead of virtual top and bottom cells, each root remembers which of those rows its component touches
+		byte flags = OPEN;
+		if (row == 0) {
+			flags |= TOP;
+		}
+		if (row == gridLength - 1) {
+			flags |= BOTTOM;
 		}
 		
-		//check cell to the left and union if also open
-		if(i > 1) {
-			if(openCells[arrayIndex - 1]) {
-				unionAlgo.union(arrayIndex,  arrayIndex - 1);
-			}
+		cellState[arrayIndex] = flags;
+		parent[arrayIndex] = -1;
+		int root = arrayIndex;
+		
+		if (flags == (OPEN | TOP | BOTTOM)) {
+			spanningComponentSize++;
 		}
 		
-		//check cell to the right and union if also open
-		if(i < gridLength) {
-			if(openCells[arrayIndex + 1]) {
-				unionAlgo.union(arrayIndex,  arrayIndex + 1);
-			}
+		//check the cells above, below, left and right and union if also open
+		if (row > 0 && cellState[arrayIndex - gridLength] != 0) {
+			root = union(root, arrayIndex - gridLength);
 		}
+		if (row < gridLength - 1 && cellState[arrayIndex + gridLength] != 0) {
+			root = union(root, arrayIndex + gridLength);
+		}
+		if (column > 0 && cellState[arrayIndex - 1] != 0) {
+			root = union(root, arrayIndex - 1);
+		}
+		if (column < gridLength - 1 && cellState[arrayIndex + 1] != 0) {
+			root = union(root, arrayIndex + 1);
+		}
+		
+		if (spans(root)) {
+			percolates = true;
+		}
+		if (-parent[root] > largestComponentSize) {
+			largestComponentSize = -parent[root];
+		}
+	}
+	
+	//Closes every cell again so the same instance can be reused for another trial
+	void reset() {
+		//parent entries are rewritten as each cell is opened, so only the state needs clearing
+		Arrays.fill(cellState, (byte) 0);
+		percolates = false;
+		largestComponentSize = 0;
+		spanningComponentSize = 0;
 	}
 	
 	//Returns true if the cell at coordinates (i,j) is open, false if it is closed
 	public boolean isOpen(int i, int j) {
 		int arrayIndex = getIndexFromCoords(i, j);
-		return openCells[arrayIndex];
+		return cellState[arrayIndex] != 0;
 	}
 	
-	//Returns true if the cell at (i,j) is connected to the virtual top cell, false if it is not connected
+	//Returns true if the cell at (i,j) is open and its component touches the top row, false if it does not
+	//Bottom row connections are kept on the root apart from top ones, so a full bottom does not backwash
 	public boolean isFull(int i, int j) {
 		int arrayIndex = getIndexFromCoords(i, j);
-		return unionAlgo.connected(arrayIndex, virtualTopCell);
+		return cellState[arrayIndex] != 0 && (cellState[find(arrayIndex)] & TOP) != 0;
 	}
 	
-	//Returns true if the grid can be percolated, i.e. there is a connection between the virtual top and bottom cell
+	//Returns true if the grid can be percolated, i.e. there is a component touching the top and bottom rows
 	public boolean percolates() {
-		return unionAlgo.connected(virtualTopCell, virtualBottomCell);
+		return percolates;
+	}
+	
+	//Saves the state of the grid to a memory-mapped file, which resume can load it back from
+	//The union-find and cell states are bulk copied into the mapping in the machine's native byte order
+	public void checkpoint(String fileName) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+			FileChannel channel = file.getChannel();
+			long fileBytes = CHECKPOINT_HEADER_BYTES + 5L * cellState.length;
+			file.setLength(fileBytes);
+			
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_HEADER_BYTES);
+			header.order(ByteOrder.nativeOrder());
+			header.putInt(CHECKPOINT_MAGIC);
+			header.putInt(gridLength);
+			header.putInt(percolates ? 1 : 0);
+			header.putInt(largestComponentSize);
+			header.putInt(spanningComponentSize);
+			
+			long position = CHECKPOINT_HEADER_BYTES;
+			for(int from = 0; from < cellState.length; from += CHECKPOINT_CELLS_PER_MAPPING) {
+				int count = Math.min(CHECKPOINT_CELLS_PER_MAPPING, cellState.length - from);
+				MappedByteBuffer cells = channel.map(FileChannel.MapMode.READ_WRITE, position, 5L * count);
+				cells.order(ByteOrder.nativeOrder()).asIntBuffer().put(parent, from, count);
+				cells.position(4 * count);
+				cells.put(cellState, from, count);
+				cells.force();
+				position += 5L * count;
+			}
+			
+			header.force();
+		}
+	}
+	
+	//Returns a grid loaded from a file saved by checkpoint, in the state it was in when saved
+	//This is a full copy, every parent and cell state is bulk copied out of the mapping into new heap arrays, as
+	//the union-find works on plain arrays. It costs one sequential read of the file, with nothing recomputed, and
+	//PackedPercolation.fromFile is the grid to use when the state should stay backed by the file instead.
+	public static Percolation resume(String fileName) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			FileChannel channel = file.getChannel();
+			if (file.length() < CHECKPOINT_HEADER_BYTES) {
+				throw new IOException(fileName + " is not a Percolation checkpoint");
+			}
+			
+			MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, CHECKPOINT_HEADER_BYTES);
+			header.order(ByteOrder.nativeOrder());
+			if (header.getInt() != CHECKPOINT_MAGIC) {
+				throw new IOException(fileName + " is not a Percolation checkpoint");
+			}
+			
+			Percolation perc = new Percolation(header.getInt());
+			perc.percolates = header.getInt() != 0;
+			perc.largestComponentSize = header.getInt();
+			perc.spanningComponentSize = header.getInt();
+			
+			int cellCount = perc.cellState.length;
+			if (file.length() < CHECKPOINT_HEADER_BYTES + 5L * cellCount) {
+				throw new IOException("Checkpoint " + fileName + " is truncated");
+			}
+			
+			long position = CHECKPOINT_HEADER_BYTES;
+			for(int from = 0; from < cellCount; from += CHECKPOINT_CELLS_PER_MAPPING) {
+				int count = Math.min(CHECKPOINT_CELLS_PER_MAPPING, cellCount - from);
+				MappedByteBuffer cells = channel.map(FileChannel.MapMode.READ_ONLY, position, 5L * count);
+				cells.order(ByteOrder.nativeOrder()).asIntBuffer().get(perc.parent, from, count);
+				cells.position(4 * count);
+				cells.get(perc.cellState, from, count);
+				position += 5L * count;
+			}
+			
+			return perc;
+		}
+	}
+	
+	//Returns the number of longs needed to hold one bit for every cell, the length snapshot expects
+	public int snapshotWords() {
+		return (cellState.length + 63) >>> 6;
+	}
+	
+	//Writes the state of every cell into two bitmaps in one pass, bit k % 64 of word k / 64 being the cell at
+	//index k counted as for open(int[]). openBits gets the open cells and fullBits the full cells.
+	//Every open cell that is not a root still takes a find, but is then pointed straight at its root, and the
+	//cells on its chain are halved on the way, so later cells of the same component mostly reach their root in
+	//a step or two. The TOP flag is then read from the root's state, with no virtual cell to compare against.
+	public void snapshot(long[] openBits, long[] fullBits) {
+		int words = snapshotWords();
+		if (openBits.length < words || fullBits.length < words) {
+			throw new IllegalArgumentException("Bitmaps must hold at least " + words + " words");
+		}
+		
+		for(int word = 0; word < words; word++) {
+			long open = 0;
+			long full = 0;
+			int end = Math.min(cellState.length, (word + 1) << 6);
+			
+			for(int cell = word << 6; cell < end; cell++) {
+				if (cellState[cell] == 0) {
+					continue;
+				}
+				
+				int root = cell;
+				if (parent[cell] >= 0) {
+					root = find(cell);
+					parent[cell] = root;
+				}
+				
+				open |= 1L << cell;
+				if ((cellState[root] & TOP) != 0) {
+					full |= 1L << cell;
+				}
+			}
+			
+			openBits[word] = open;
+			fullBits[word] = full;
+		}
+	}
+	
+	//Returns the number of cells in the largest component
+	int largestComponentSize() {
+		return largestComponentSize;
+	}
+	
+	//Returns the number of cells in components touching both the top and bottom row
+	int spanningComponentSize() {
+		return spanningComponentSize;
+	}
+	
+	//Returns true if the component with this root touches both the top and bottom row
+	private boolean spans(int root) {
+		return (cellState[root] & (TOP | BOTTOM)) == (TOP | BOTTOM);
+	}
+	
+	//Returns the root of an open cell, pointing every other cell on the way at its grandparent (path halving)
+	private int find(int cell) {
+		while (parent[cell] >= 0) {
+			int next = parent[cell];
+			if (parent[next] < 0) {
+				return next;
+			}
+			
+			parent[cell] = parent[next];
+			cell = parent[next];
+		}
+		
+		return cell;
+	}
+	
+	//Joins the component of root with that of an open neighbour, hanging the smaller under the larger
+	//Returns the root of the joined component, which carries the state flags of both
+	private int union(int root, int neighbour) {
+		int neighbourRoot = find(neighbour);
+		if (neighbourRoot == root) {
+			return root;
+		}
+		
+		if (parent[root] > parent[neighbourRoot]) {
+			int temp = root;
+			root = neighbourRoot;
+			neighbourRoot = temp;
+		}
+		
+		//Spanning components being merged stop counting on their own, the merged one counts if it spans
+		if (spans(root)) {
+			spanningComponentSize += parent[root];
+		}
+		if (spans(neighbourRoot)) {
+			spanningComponentSize += parent[neighbourRoot];
+		}
+		
+		parent[root] += parent[neighbourRoot];
+		parent[neighbourRoot] = root;
+		cellState[root] |= cellState[neighbourRoot];
+		
+		if (spans(root)) {
+			spanningComponentSize -= parent[root];
+		}
+		
+		return root;
 	}
 	
 	//checks the coordinates (i,j) are within the grid
@@ -99,9 +327,9 @@ public class Percolation {
 		}
 	}
 	
-	//converts the 2D coordinate (i,j) into the equivalent 1D index
+	//converts the 2D coordinate (i,j) into the equivalent 1D index, row by row from the top left cell at 0
 	private int getIndexFromCoords(int i, int j) {
 		checkForValidIndex(i,j);
-		return (j - 1) * gridLength + i;
+		return (j - 1) * gridLength + (i - 1);
 	}
 }
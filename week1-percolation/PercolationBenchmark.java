@@ -0,0 +1,305 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+//PercolationBenchmark measures Percolation.open, isFull and percolates, and a whole PercolationStats trial, across
+//grid sizes and for random and adversarial open orders. Each measurement reports throughput, average latency per
+//operation and bytes allocated per operation, and can be saved to and compared with a baseline file.
+//
+//Usage: java PercolationBenchmark [gridLengths] [resultsFile] [baselineFile]
+//gridLengths is a comma separated list, by default 64,256,1024,4096,8192. Results are written to resultsFile as
+//CSV, and when baselineFile names an earlier results file the change against it is printed for each row.
+public class PercolationBenchmark {
+	
+	//The grid sizes measured when none are given
+	private static final String DEFAULT_GRID_LENGTHS = "64,256,1024,4096,8192";
+	
+	//Time spent running each operation before measuring it, and the time of each measured iteration
+	private static final long WARMUP_NANOS = 1000000000L;
+	private static final long ITERATION_NANOS = 1000000000L;
+	private static final int ITERATIONS = 5;
+	
+	//The number of operations performed by one call of a batched operation
+	private static final int BATCH_SIZE = 4096;
+	
+	//The number of grids percolates is asked of in turn, opened to evenly spaced fractions of their cells
+	private static final int PERCOLATES_GRIDS = 4;
+	
+	//Seed for the open orders and trials, fixed so every run measures the same work
+	private static final long SEED = 20141001L;
+	
+	//Accumulates results of the measured operations so the JIT cannot discard them
+	private static long sink;
+	
+	//An operation under measurement, each call performs a batch of operations and returns how many
+	private interface Operation {
+		long perform();
+	}
+	
+	//The averaged measurement of one operation
+	private static class Result {
+		private final double opsPerSecond;
+		private final double nanosPerOp;
+		private final double bytesPerOp;
+		
+		Result(double opsPerSecond, double nanosPerOp, double bytesPerOp) {
+			this.opsPerSecond = opsPerSecond;
+			this.nanosPerOp = nanosPerOp;
+			this.bytesPerOp = bytesPerOp;
+		}
+	}
+	
+	//Returns an open order visiting every cell once, in 0-based row-major indices as taken by Percolation
+	//random is a Knuth shuffle. adversarial first opens a checkerboard, leaving every open cell its own component,
+	//then fills in the rest so nearly every open joins four components, the most unions one open can cause.
+	private static int[] openOrder(int gridLength, String order) {
+		int cellCount = gridLength * gridLength;
+		int[] sites = new int[cellCount];
+		
+		if (order.equals("random")) {
+			SplittableRandom random = new SplittableRandom(SEED);
+			for(int k = 0; k < cellCount; k++) {
+				sites[k] = k;
+			}
+			for(int k = 1; k < cellCount; k++) {
+				int swapIndex = random.nextInt(k + 1);
+				int temp = sites[k];
+				sites[k] = sites[swapIndex];
+				sites[swapIndex] = temp;
+			}
+		} else {
+			int next = 0;
+			for(int parity = 0; parity < 2; parity++) {
+				for(int k = 0; k < cellCount; k++) {
+					if ((k / gridLength + k % gridLength) % 2 == parity) {
+						sites[next++] = k;
+					}
+				}
+			}
+		}
+		
+		return sites;
+	}
+	
+	//Returns an operation opening the cells of sites in order, a batch at a time, resetting the grid when full
+	private static Operation openOperation(final int gridLength, final int[] sites) {
+		return new Operation() {
+			private final Percolation perc = new Percolation(gridLength);
+			private int next = 0;
+			
+			@Override
+			public long perform() {
+				if (next == sites.length) {
+					perc.reset();
+					next = 0;
+				}
+				
+				int end = Math.min(sites.length, next + BATCH_SIZE);
+				long count = end - next;
+				for(; next < end; next++) {
+					int site = sites[next];
+					perc.open(site % gridLength + 1, site / gridLength + 1);
+				}
+				sink += next;
+				return count;
+			}
+		};
+	}
+	
+	//Returns a grid with the cells of sites opened in order until it percolates
+	private static Percolation percolatingGrid(int gridLength, int[] sites) {
+		Percolation perc = new Percolation(gridLength);
+		for(int k = 0; k < sites.length && !perc.percolates(); k++) {
+			perc.open(sites[k] % gridLength + 1, sites[k] / gridLength + 1);
+		}
+		return perc;
+	}
+	
+	//Returns an operation asking isFull for cells spread over a grid opened until it percolates
+	private static Operation isFullOperation(final int gridLength, int[] sites) {
+		final Percolation perc = percolatingGrid(gridLength, sites);
+		final int[] queries = new int[BATCH_SIZE];
+		SplittableRandom random = new SplittableRandom(SEED);
+		for(int k = 0; k < BATCH_SIZE; k++) {
+			queries[k] = random.nextInt(gridLength * gridLength);
+		}
+		
+		return new Operation() {
+			@Override
+			public long perform() {
+				long full = 0;
+				for(int k = 0; k < BATCH_SIZE; k++) {
+					if (perc.isFull(queries[k] % gridLength + 1, queries[k] / gridLength + 1)) {
+						full++;
+					}
+				}
+				sink += full;
+				return BATCH_SIZE;
+			}
+		};
+	}
+	
+	//Returns an operation asking percolates of grids picked at random from several opened to 1/5 up to 4/5 of
+	//their cells, so some percolate and some do not. Asking one grid over and over would let the JIT read its
+	//unchanging percolates flag once for the whole batch.
+	private static Operation percolatesOperation(int gridLength, int[] sites) {
+		final Percolation[] grids = new Percolation[PERCOLATES_GRIDS];
+		for(int g = 0; g < PERCOLATES_GRIDS; g++) {
+			grids[g] = new Percolation(gridLength);
+			int openCount = (int) ((long) sites.length * (g + 1) / (PERCOLATES_GRIDS + 1));
+			for(int k = 0; k < openCount; k++) {
+				grids[g].open(sites[k] % gridLength + 1, sites[k] / gridLength + 1);
+			}
+		}
+		
+		final int[] queries = new int[BATCH_SIZE];
+		SplittableRandom random = new SplittableRandom(SEED);
+		for(int k = 0; k < BATCH_SIZE; k++) {
+			queries[k] = random.nextInt(PERCOLATES_GRIDS);
+		}
+		
+		return new Operation() {
+			@Override
+			public long perform() {
+				long percolating = 0;
+				for(int k = 0; k < BATCH_SIZE; k++) {
+					if (grids[queries[k]].percolates()) {
+						percolating++;
+					}
+				}
+				sink += percolating;
+				return BATCH_SIZE;
+			}
+		};
+	}
+	
+	//Returns an operation running one PercolationStats trial, including its grid, on the calling thread
+	private static Operation trialOperation(final int gridLength) {
+		return new Operation() {
+			private int trial = 0;
+			
+			@Override
+			public long perform() {
+				sink += (long) (PercolationStats.performTrial(gridLength, SEED, trial++) * gridLength);
+				return 1;
+			}
+		};
+	}
+	
+	//Returns the bytes allocated so far by the current thread, or -1 where the JVM cannot say
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+	
+	//Warms up then measures an operation over several iterations, averaging the iterations
+	private static Result measure(Operation operation) {
+		long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+		while(System.nanoTime() < warmupEnd) {
+			operation.perform();
+		}
+		
+		long totalOps = 0;
+		long totalNanos = 0;
+		long totalBytes = 0;
+		
+		for(int iteration = 0; iteration < ITERATIONS; iteration++) {
+			long bytesBefore = allocatedBytes();
+			long start = System.nanoTime();
+			long elapsed;
+			do {
+				totalOps += operation.perform();
+				elapsed = System.nanoTime() - start;
+			} while(elapsed < ITERATION_NANOS);
+			
+			totalNanos += elapsed;
+			totalBytes += allocatedBytes() - bytesBefore;
+		}
+		
+		double bytesPerOp = allocatedBytes() < 0 ? Double.NaN : (double) totalBytes / totalOps;
+		return new Result(totalOps * 1e9 / totalNanos, (double) totalNanos / totalOps, bytesPerOp);
+	}
+	
+	//Reads the ops per second of each row of an earlier results file, keyed by operation, size and order
+	private static Map<String, Double> readBaseline(String fileName) throws IOException {
+		Map<String, Double> baseline = new HashMap<String, Double>();
+		
+		try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+			reader.readLine();
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] fields = line.split(",");
+				baseline.put(fields[0] + "," + fields[1] + "," + fields[2], Double.parseDouble(fields[3]));
+			}
+		}
+		
+		return baseline;
+	}
+	
+	//Main method that runs every benchmark, printing a row per measurement and saving and comparing them if asked
+	public static void main(String[] args) throws IOException {
+		String[] gridLengths = (args.length > 0 ? args[0] : DEFAULT_GRID_LENGTHS).split(",");
+		PrintWriter results = args.length > 1 ? new PrintWriter(new FileWriter(args[1])) : null;
+		Map<String, Double> baseline = args.length > 2 ? readBaseline(args[2]) : null;
+		
+		if (results != null) {
+			results.println("operation,gridLength,order,opsPerSecond,nanosPerOp,bytesPerOp");
+		}
+		StdOut.printf("%-11s %6s %-11s %15s %13s %12s %9s%n",
+				"operation", "N", "order", "ops/s", "ns/op", "B/op", "vs base");
+		
+		for(String gridLengthArg : gridLengths) {
+			int gridLength = Integer.parseInt(gridLengthArg.trim());
+			
+			for(String order : new String[] { "random", "adversarial" }) {
+				int[] sites = openOrder(gridLength, order);
+				
+				String[] operations = { "open", "isFull", "percolates", "trial" };
+				for(String name : operations) {
+					Operation operation;
+					if (name.equals("open")) {
+						operation = openOperation(gridLength, sites);
+					} else if (name.equals("isFull")) {
+						operation = isFullOperation(gridLength, sites);
+					} else if (name.equals("percolates")) {
+						operation = percolatesOperation(gridLength, sites);
+					} else if (order.equals("random")) {
+						//A trial chooses its own random order, so it is only measured once per size
+						operation = trialOperation(gridLength);
+					} else {
+						continue;
+					}
+					
+					Result result = measure(operation);
+					String key = name + "," + gridLength + "," + order;
+					
+					String change = "";
+					if (baseline != null && baseline.containsKey(key)) {
+						change = String.format("%+.1f%%", 100.0 * (result.opsPerSecond / baseline.get(key) - 1));
+					}
+					
+					StdOut.printf("%-11s %6d %-11s %15.1f %13.1f %12.2f %9s%n",
+							name, gridLength, order, result.opsPerSecond, result.nanosPerOp, result.bytesPerOp, change);
+					if (results != null) {
+						results.println(key + "," + result.opsPerSecond + "," + result.nanosPerOp + "," + result.bytesPerOp);
+						results.flush();
+					}
+				}
+			}
+		}
+		
+		if (results != null) {
+			results.close();
+		}
+		StdOut.println("(checksum " + sink + ")");
+	}
+}
@@ -1,85 +1,386 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 //PercolationStats accepts a number of trials and a grid size and determines what proportion of cells must be
 //open in order for the system to percolate.
 public class PercolationStats {
 	
-	//The number of trials to perform.
-	private int trialCount;
+	//The number of trials handled by one fork-join leaf task, fixed so the split never depends on the thread count.
+	private static final int TRIALS_PER_TASK = 8;
+	
+	//The number of trials run before the confidence interval width is first checked in adaptive mode.
+	private static final int MIN_ADAPTIVE_TRIALS = 32;
+	
+	//The number of trials run between checkpoints, fixed for the same reason as TRIALS_PER_TASK.
+	private static final int TRIALS_PER_CHECKPOINT = 256;
+	
+	//Marks a PercolationStats checkpoint file, and the size of one: the magic and grid size as ints, the seed as a
+	//long, the minimum and maximum trials as ints, the target width as a double, then the trial count as a long and
+	//the running mean and squared deviations as doubles.
+	private static final int CHECKPOINT_MAGIC = 0x50535432;
+	private static final int CHECKPOINT_BYTES = 56;
+	
+	//The z score of a 95% confidence interval.
+	private static final double CONFIDENCE_Z = 1.96;
+	
+	//The grid and site buffer of each worker thread, reused by every trial it performs on a grid of that length.
+	private static final ThreadLocal<TrialBuffers> TRIAL_BUFFERS = new ThreadLocal<TrialBuffers>();
 	
-	//The proportion of cells opened to percolate the system, each entry represents one trial.
-	private double[] results;
+	//Running mean and spread of the proportion of cells opened to percolate the system, over every trial so far.
+	private final RunningStats results = new RunningStats();
 	
-	//Constructor, accepts the size of the grid and number of trials, then performs them.
+	//Constructor, accepts the size of the grid and number of trials, then performs them on the calling thread.
 	public PercolationStats(int gridSize, int numberOfTrials) {
-		if(gridSize <= 0 || numberOfTrials <= 0) {
+		this(gridSize, numberOfTrials, 1, System.nanoTime());
+	}
+	
+	//Constructor, accepts the size of the grid, number of trials, number of worker threads and a master seed.
+	//With one thread the trials are performed on the calling thread, without starting a pool. Each trial draws
+	//from its own random stream derived from the master seed and its trial number, so the results are the same
+	//for a given seed however many threads perform them.
+	public PercolationStats(int gridSize, int numberOfTrials, int threadCount, long seed) {
+		this(gridSize, numberOfTrials, numberOfTrials, Double.POSITIVE_INFINITY, threadCount, seed, null);
+	}
+	
+	//Constructor as above that also saves its progress to checkpointFile every few hundred trials. If the file
+	//already holds a checkpoint for the same grid size, seed and trial count, trials continue from where it stopped.
+	public PercolationStats(int gridSize, int numberOfTrials, int threadCount, long seed, String checkpointFile) {
+		this(gridSize, numberOfTrials, numberOfTrials, Double.POSITIVE_INFINITY, threadCount, seed, checkpointFile);
+	}
+	
+	//Constructor for adaptive mode, accepts the size of the grid, the width the 95% confidence interval should
+	//narrow to, a cap on the number of trials, the number of worker threads and a master seed. Trials are run
+	//in batches sized from the current spread until the interval is narrow enough or the cap is reached.
+	public PercolationStats(int gridSize, double targetWidth, int maxTrials, int threadCount, long seed) {
+		this(gridSize, Math.min(MIN_ADAPTIVE_TRIALS, maxTrials), maxTrials, targetWidth, threadCount, seed, null);
+	}
+	
+	//Constructor for adaptive mode that also saves its progress to, and continues from, checkpointFile.
+	public PercolationStats(int gridSize, double targetWidth, int maxTrials, int threadCount, long seed,
+			String checkpointFile) {
+		this(gridSize, Math.min(MIN_ADAPTIVE_TRIALS, maxTrials), maxTrials, targetWidth, threadCount, seed,
+				checkpointFile);
+	}
+	
+	//Runs minTrials, then further batches until the confidence interval is no wider than targetWidth or
+	//maxTrials have run. Batch sizes depend only on the results so far, never on the thread count.
+	//With a checkpoint file, batches are cut to TRIALS_PER_CHECKPOINT and the results saved after each one.
+	//Failures reading or writing the checkpoint are thrown as UncheckedIOException.
+	private PercolationStats(int gridSize, int minTrials, int maxTrials, double targetWidth, int threadCount,
+			long seed, String checkpointFile) {
+		if(gridSize <= 0 || minTrials <= 0 || threadCount <= 0) {
 			throw new IllegalArgumentException("Input must be a positive integer greater than 0");
 		}
+		if (!(targetWidth > 0)) {
+			throw new IllegalArgumentException("Target confidence interval width must be greater than 0");
+		}
 		
-		this.trialCount = numberOfTrials;
-		results = new double[numberOfTrials];
-		
-		for(int i = 0; i < this.trialCount; i++) {
-			results[i] = performTrial(gridSize);
+		//A single thread performs the trials on the caller rather than on a pool's one worker
+		ForkJoinPool pool = threadCount > 1 ? new ForkJoinPool(threadCount) : null;
+		try {
+			if (checkpointFile != null) {
+				resumeCheckpoint(checkpointFile, gridSize, seed, minTrials, maxTrials, targetWidth);
+			}
+			
+			while(true) {
+				int nextTrials;
+				if (results.count < minTrials) {
+					nextTrials = minTrials;
+				} else if (results.count < maxTrials && !(confidenceHi() - confidenceLo() <= targetWidth)) {
+					nextTrials = (int) Math.min(maxTrials, Math.min(2 * results.count, trialsForWidth(targetWidth)));
+					nextTrials = Math.max(nextTrials, (int) results.count + 1);
+				} else {
+					break;
+				}
+				
+				if (checkpointFile != null) {
+					nextTrials = (int) Math.min(nextTrials, results.count + TRIALS_PER_CHECKPOINT);
+				}
+				
+				TrialTask task = new TrialTask(gridSize, seed, (int) results.count, nextTrials);
+				results.merge(pool != null ? pool.invoke(task) : task.compute());
+				
+				if (checkpointFile != null) {
+					writeCheckpoint(checkpointFile, gridSize, seed, minTrials, maxTrials, targetWidth);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			} else {
+				//Let the caller's grid go, as the thread may live on long after the trials
+				TRIAL_BUFFERS.remove();
+			}
 		}
 	}
 	
+	//Returns the number of trials performed.
+	public int trialCount() {
+		return (int) results.count;
+	}
+	
 	//Returns the mean proportion of cells opened to percolate the system.
 	public double mean() {
-		return StdStats.mean(results);
+		return results.mean;
 	}
 	
 	//Returns the standard deviation of proportion of cells opened to percolate the system.
 	public double stddev() {
-		if (trialCount == 1) {
+		if (results.count == 1) {
 			return Double.NaN;
 		} else {
-			return StdStats.stddev(results);
+			return Math.sqrt(results.squaredDeviations / (results.count - 1));
 		}
 	}
 	
 	//Returns the lower, 95% confidence interval of open cell proportion, assumes trial number is over 30.
 	public double confidenceLo() {
-		return (mean() - (1.96 * stddev() / Math.sqrt(trialCount)));
+		return (mean() - (CONFIDENCE_Z * stddev() / Math.sqrt(results.count)));
 	}
 	
 	//Returns the upper, 95% confidence interval of open cell proportion, assumes trial number is over 30.
 	public double confidenceHi() {
-		return (mean() + (1.96 * stddev() / Math.sqrt(trialCount)));
+		return (mean() + (CONFIDENCE_Z * stddev() / Math.sqrt(results.count)));
+	}
+	
+	//Saves the run's parameters and running results to a memory-mapped checkpoint file and forces it to disk.
+	private void writeCheckpoint(String checkpointFile, int gridSize, long seed, int minTrials, int maxTrials,
+			double targetWidth) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(checkpointFile, "rw")) {
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, CHECKPOINT_BYTES);
+			
+			buffer.putInt(CHECKPOINT_MAGIC);
+			buffer.putInt(gridSize);
+			buffer.putLong(seed);
+			buffer.putInt(minTrials);
+			buffer.putInt(maxTrials);
+			buffer.putDouble(targetWidth);
+			buffer.putLong(results.count);
+			buffer.putDouble(results.mean);
+			buffer.putDouble(results.squaredDeviations);
+			buffer.force();
+		}
+	}
+	
+	//Loads the running results from a checkpoint file, if there is one, after checking it was saved by a run
+	//with the same grid size, seed, trial counts and target width; trial seeds depend only on the seed, so later
+	//trials carry on unchanged.
+	private void resumeCheckpoint(String checkpointFile, int gridSize, long seed, int minTrials, int maxTrials,
+			double targetWidth) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(checkpointFile, "rw")) {
+			if (file.length() == 0) {
+				return;
+			}
+			if (file.length() < CHECKPOINT_BYTES) {
+				throw new IOException("Checkpoint " + checkpointFile + " is truncated");
+			}
+			
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, CHECKPOINT_BYTES);
+			
+			if (buffer.getInt() != CHECKPOINT_MAGIC) {
+				throw new IOException(checkpointFile + " is not a PercolationStats checkpoint");
+			}
+			if (buffer.getInt() != gridSize || buffer.getLong() != seed) {
+				throw new IllegalArgumentException("Checkpoint " + checkpointFile + " was saved with a different grid size or seed");
+			}
+			if (buffer.getInt() != minTrials || buffer.getInt() != maxTrials
+					|| Double.compare(buffer.getDouble(), targetWidth) != 0) {
+				throw new IllegalArgumentException("Checkpoint " + checkpointFile
+						+ " was saved with a different trial count or target width");
+			}
+			
+			results.count = buffer.getLong();
+			results.mean = buffer.getDouble();
+			results.squaredDeviations = buffer.getDouble();
+		}
+	}
+	
+	//Estimates the total number of trials needed for the confidence interval to be targetWidth wide.
+	private double trialsForWidth(double targetWidth) {
+		double trials = 2 * CONFIDENCE_Z * stddev() / targetWidth;
+		return Math.ceil(trials * trials);
 	}
 	
-	//Performs the trial by opening cells until the system percolates, adding the proportion to the results.
-	private double performTrial(int gridLength) {
-		Percolation perc = new Percolation(gridLength);
+	//Performs the trial by opening cells until the system percolates, returning the proportion opened.
+	//Cells are opened in the order of a Fisher-Yates shuffle of the sites buffer drawn one step at a time,
+	//so every draw opens a closed cell and the shuffle stops as soon as the system percolates. The buffer is
+	//put back in index order first so a trial's result depends only on its random stream, not on which trials
+	//ran before it in the same buffer, keeping results the same however trials are batched or checkpointed.
+	private static double performTrial(Percolation perc, int[] sites, SplittableRandom random) {
+		perc.reset();
+		fillSiteBuffer(sites);
 		int sitesOpened = 0;
 		
 		while(!perc.percolates()) {
-			while(true) {
-				int i = StdRandom.uniform(1, gridLength + 1);
-				int j = StdRandom.uniform(1, gridLength + 1);
-				
-				if(!perc.isOpen(i, j)) {
-					perc.open(i, j);
-					sitesOpened++;
-					
-					break;
-				}
-			}
+			int swapIndex = sitesOpened + random.nextInt(sites.length - sitesOpened);
+			int site = sites[swapIndex];
+			sites[swapIndex] = sites[sitesOpened];
+			sites[sitesOpened] = site;
+			
+			perc.openSite(site);
+			sitesOpened++;
 		}
 		
-		double result = (double)sitesOpened / (double)(gridLength * gridLength);
+		double result = (double)sitesOpened / (double)sites.length;
 		
 		return result;
 	}
 	
+	//Performs one trial of masterSeed on the calling thread with a grid and site buffer of its own.
+	static double performTrial(int gridLength, long masterSeed, int trial) {
+		return performTrial(new Percolation(gridLength), new int[gridLength * gridLength],
+				new SplittableRandom(trialSeed(masterSeed, trial)));
+	}
+	
+	//Returns the calling thread's grid and site buffer for a grid of gridLength, replacing any of another length.
+	//performTrial resets both before each trial, so which trials shared them never changes a result.
+	private static TrialBuffers trialBuffers(int gridLength) {
+		TrialBuffers buffers = TRIAL_BUFFERS.get();
+		if (buffers == null || buffers.gridLength != gridLength) {
+			buffers = new TrialBuffers(gridLength);
+			TRIAL_BUFFERS.set(buffers);
+		}
+		return buffers;
+	}
+	
+	//Fills the buffer with the index of every cell in the grid in order, in the layout used by Percolation.
+	private static void fillSiteBuffer(int[] sites) {
+		for(int k = 0; k < sites.length; k++) {
+			sites[k] = k;
+		}
+	}
+	
+	//Derives the seed of one trial's random stream from the master seed, using the SplitMix64 finalizer
+	//so that neighbouring trial numbers give unrelated streams.
+	private static long trialSeed(long masterSeed, int trial) {
+		long z = masterSeed + (trial + 1L) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	//A grid and a site buffer to perform trials in, one per worker thread.
+	private static final class TrialBuffers {
+		private final int gridLength;
+		private final Percolation perc;
+		private final int[] sites;
+		
+		TrialBuffers(int gridLength) {
+			this.gridLength = gridLength;
+			this.perc = new Percolation(gridLength);
+			this.sites = new int[gridLength * gridLength];
+		}
+	}
+	
+	//Running count, mean and sum of squared deviations from the mean of the trial results, updated one result
+	//at a time with Welford's method and combined with Chan's formula, so no result needs to be kept.
+	private static final class RunningStats {
+		private long count;
+		private double mean;
+		private double squaredDeviations;
+		
+		//Adds one result
+		void add(double result) {
+			count++;
+			double delta = result - mean;
+			mean += delta / count;
+			squaredDeviations += delta * (result - mean);
+		}
+		
+		//Adds every result seen by other, as if they had been added one at a time
+		void merge(RunningStats other) {
+			if (other.count == 0) {
+				return;
+			}
+			
+			long total = count + other.count;
+			double delta = other.mean - mean;
+			mean += delta * other.count / total;
+			squaredDeviations += other.squaredDeviations + delta * delta * ((double) count * other.count / total);
+			count = total;
+		}
+	}
+	
+	//Fork-join task that performs the trials in [from, to), halving the range until it is small enough to run.
+	//Each half's results are merged left then right, so the totals do not depend on which thread ran what.
+	//Computed outside of a pool, both halves run on the calling thread, split and merged in the same way.
+	private static class TrialTask extends RecursiveTask<RunningStats> {
+		private static final long serialVersionUID = 1L;
+		
+		private final int gridLength;
+		private final long masterSeed;
+		private final int from;
+		private final int to;
+		
+		TrialTask(int gridLength, long masterSeed, int from, int to) {
+			this.gridLength = gridLength;
+			this.masterSeed = masterSeed;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected RunningStats compute() {
+			if (to - from <= TRIALS_PER_TASK) {
+				//The grid and site buffer are the worker's own, shared by every trial it runs
+				TrialBuffers buffers = trialBuffers(gridLength);
+				RunningStats stats = new RunningStats();
+				
+				for(int trial = from; trial < to; trial++) {
+					stats.add(performTrial(buffers.perc, buffers.sites,
+							new SplittableRandom(trialSeed(masterSeed, trial))));
+				}
+				
+				return stats;
+			} else {
+				int mid = (from + to) >>> 1;
+				TrialTask right = new TrialTask(gridLength, masterSeed, mid, to);
+				if (!inForkJoinPool()) {
+					RunningStats stats = new TrialTask(gridLength, masterSeed, from, mid).compute();
+					stats.merge(right.compute());
+					return stats;
+				}
+				right.fork();
+				
+				RunningStats stats = new TrialTask(gridLength, masterSeed, from, mid).compute();
+				stats.merge(right.join());
+				
+				return stats;
+			}
+		}
+	}
+	
 	//Main method that accepts in 2 arguments, the trial count and the size of the grid then prints the results.
+	//Optional third and fourth arguments give the number of worker threads and the master seed. An optional
+	//fifth argument gives a target confidence interval width, making the trial count a cap in adaptive mode,
+	//where 0 keeps the fixed trial count. An optional sixth argument names a checkpoint file to save to and
+	//resume from.
 	public static void main(String[] args) {
 		int trialCount = Integer.parseInt(args[0]);
 		int gridSize = Integer.parseInt(args[1]);
+		int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+		double targetWidth = args.length > 4 ? Double.parseDouble(args[4]) : 0;
+		String checkpointFile = args.length > 5 ? args[5] : null;
 		
-		PercolationStats stats = new PercolationStats(gridSize, trialCount);
+		PercolationStats stats;
+		if (targetWidth > 0) {
+			stats = new PercolationStats(gridSize, targetWidth, trialCount, threadCount, seed, checkpointFile);
+		} else {
+			stats = new PercolationStats(gridSize, trialCount, threadCount, seed, checkpointFile);
+		}
 		
+		StdOut.println("trials                  = " + stats.trialCount());
 		StdOut.println("mean                    = " + stats.mean());
 		StdOut.println("stddev                  = " + stats.stddev());
 		StdOut.println("95% confidence interval = " + stats.confidenceLo() + ", " + stats.confidenceHi());
 	}
 }
-
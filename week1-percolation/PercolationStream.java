@@ -0,0 +1,290 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+//PercolationStream labels the clusters of a fixed grid read one row at a time, with the Hoshen-Kopelman algorithm,
+//so grids too large to hold in memory can still be checked. Only the labels of the previous and current row and
+//a union-find over those labels are kept, which is memory proportional to one row.
+//The grid is read as one byte per cell, row by row from the top left cell. Bytes 0 and '0' are closed cells and
+//any other byte but a line break is an open cell, so both raw images and text of 0s and 1s can be read. Line
+//breaks, '\r' and '\n', may come between rows and are skipped; one inside a row is an error.
+public class PercolationStream {
+	
+	//Label flag for clusters containing a cell in the top row
+	private static final byte TOP = 1;
+	
+	//The length of one side of the square grid
+	private final int gridLength;
+	
+	//Cluster labels of the previous and current row, -1 for closed cells
+	private int[] previousRow;
+	private int[] currentRow;
+	
+	//Union-find over the labels, labels of the previous row are below gridLength and new ones from gridLength up
+	//Each root keeps the number of cells read so far in its cluster and whether the cluster touches the top row
+	private int[] parent;
+	private long[] size;
+	private byte[] flags;
+	
+	//The same arrays for the labels after compacting them at the end of a row, swapped with the above each row
+	private int[] nextParent;
+	private long[] nextSize;
+	private byte[] nextFlags;
+	
+	//The compacted label given to each root of the row just read, or -1 if it has not been given one
+	private int[] compactedLabel;
+	
+	//The number of labels in use by the previous row, and the next free label in the current row
+	private int previousLabelCount;
+	private int nextLabel;
+	
+	//Results, updated as each cluster is completed
+	private long openSites;
+	private long clusterCount;
+	private long largestClusterSize;
+	private boolean percolates;
+	
+	//Constructor, accepts the name of a grid file and the length of the grid, then reads and labels the grid
+	public PercolationStream(String fileName, int gridLength) throws IOException {
+		this(new RandomAccessFile(fileName, "r").getChannel(), gridLength, true);
+	}
+	
+	//Constructor, accepts a channel positioned at the start of a grid and the length of the grid, then reads and
+	//labels the grid. The channel is left open.
+	public PercolationStream(ReadableByteChannel channel, int gridLength) throws IOException {
+		this(channel, gridLength, false);
+	}
+	
+	private PercolationStream(ReadableByteChannel channel, int gridLength, boolean closeChannel) throws IOException {
+		if (gridLength <= 0) {
+			throw new IllegalArgumentException("Grid length must be a positive integer greater than 0");
+		}
+		
+		this.gridLength = gridLength;
+		this.previousRow = new int[gridLength];
+		this.currentRow = new int[gridLength];
+		this.parent = new int[2 * gridLength];
+		this.size = new long[2 * gridLength];
+		this.flags = new byte[2 * gridLength];
+		this.nextParent = new int[2 * gridLength];
+		this.nextSize = new long[2 * gridLength];
+		this.nextFlags = new byte[2 * gridLength];
+		this.compactedLabel = new int[2 * gridLength];
+		
+		Arrays.fill(previousRow, -1);
+		Arrays.fill(compactedLabel, -1);
+		
+		try {
+			byte[] cells = new byte[gridLength];
+			ByteBuffer input = ByteBuffer.allocate(gridLength);
+			input.flip();
+			
+			for(int row = 0; row < gridLength; row++) {
+				int filled = 0;
+				while(filled < gridLength) {
+					//Read no more than the row still needs, so nothing after the grid is taken from the channel
+					if (!input.hasRemaining()) {
+						input.clear();
+						input.limit(gridLength - filled);
+						int read = channel.read(input);
+						input.flip();
+						if (read < 0) {
+							throw new IOException("Grid ended after " + row + " full rows of " + gridLength);
+						}
+						continue;
+					}
+					
+					byte cell = input.get();
+					if (cell == '\n' || cell == '\r') {
+						if (filled > 0) {
+							throw new IOException("Row " + row + " has a line break after " + filled + " of its "
+									+ gridLength + " cells");
+						}
+						continue;
+					}
+					cells[filled++] = cell;
+				}
+				
+				labelRow(cells, row == 0);
+				compactLabels(row == gridLength - 1);
+			}
+		} finally {
+			if (closeChannel) {
+				channel.close();
+			}
+		}
+	}
+	
+	//Returns true if an open path joins the top and bottom row, the same answer Percolation.percolates() gives
+	public boolean percolates() {
+		return percolates;
+	}
+	
+	//Returns the number of open cells in the grid
+	public long openSites() {
+		return openSites;
+	}
+	
+	//Returns the number of clusters of connected open cells in the grid
+	public long clusterCount() {
+		return clusterCount;
+	}
+	
+	//Returns the number of cells in the largest cluster
+	public long largestClusterSize() {
+		return largestClusterSize;
+	}
+	
+	//Labels the open cells of one row, joining each to the open cells above and to the left
+	private void labelRow(byte[] cells, boolean topRow) {
+		nextLabel = gridLength;
+		
+		for(int column = 0; column < gridLength; column++) {
+			if (cells[column] == 0 || cells[column] == '0') {
+				currentRow[column] = -1;
+				continue;
+			}
+			
+			openSites++;
+			
+			int above = previousRow[column];
+			int left = column > 0 ? currentRow[column - 1] : -1;
+			int label;
+			
+			if (above < 0 && left < 0) {
+				label = nextLabel++;
+				parent[label] = label;
+				size[label] = 0;
+				flags[label] = topRow ? TOP : 0;
+			} else if (left < 0) {
+				label = find(above);
+			} else if (above < 0) {
+				label = find(left);
+			} else {
+				label = union(find(above), find(left));
+			}
+			
+			size[label]++;
+			currentRow[column] = label;
+		}
+	}
+	
+	//Renumbers the clusters of the row just read from 0, and completes any cluster of the previous row that
+	//did not continue into it. On the last row every cluster is complete.
+	private void compactLabels(boolean lastRow) {
+		int labelCount = 0;
+		
+		for(int column = 0; column < gridLength; column++) {
+			if (currentRow[column] < 0) {
+				continue;
+			}
+			
+			int root = find(currentRow[column]);
+			if (compactedLabel[root] < 0) {
+				compactedLabel[root] = labelCount;
+				nextParent[labelCount] = labelCount;
+				nextSize[labelCount] = size[root];
+				nextFlags[labelCount] = flags[root];
+				labelCount++;
+			}
+			currentRow[column] = compactedLabel[root];
+		}
+		
+		//Clusters of the previous row whose root has no cell in this row are complete
+		for(int label = 0; label < previousLabelCount; label++) {
+			int root = find(label);
+			if (compactedLabel[root] < 0) {
+				compactedLabel[root] = Integer.MAX_VALUE;
+				completeCluster(size[root]);
+			}
+		}
+		
+		if (lastRow) {
+			for(int label = 0; label < labelCount; label++) {
+				if ((nextFlags[label] & TOP) != 0) {
+					percolates = true;
+				}
+				completeCluster(nextSize[label]);
+			}
+		}
+		
+		//Clear the compacted labels given out, then swap the label arrays and rows over
+		//Every root is one of the previous row's labels or a new label of this row
+		for(int label = 0; label < previousLabelCount; label++) {
+			compactedLabel[label] = -1;
+		}
+		for(int label = gridLength; label < nextLabel; label++) {
+			compactedLabel[label] = -1;
+		}
+		
+		int[] tempParent = parent;
+		parent = nextParent;
+		nextParent = tempParent;
+		
+		long[] tempSize = size;
+		size = nextSize;
+		nextSize = tempSize;
+		
+		byte[] tempFlags = flags;
+		flags = nextFlags;
+		nextFlags = tempFlags;
+		
+		int[] tempRow = previousRow;
+		previousRow = currentRow;
+		currentRow = tempRow;
+		
+		previousLabelCount = labelCount;
+	}
+	
+	//Records the size of a cluster that no later row can add to
+	private void completeCluster(long clusterSize) {
+		clusterCount++;
+		if (clusterSize > largestClusterSize) {
+			largestClusterSize = clusterSize;
+		}
+	}
+	
+	//Returns the root of a label, pointing every other label on the way at its grandparent (path halving)
+	private int find(int label) {
+		while (parent[label] != label) {
+			parent[label] = parent[parent[label]];
+			label = parent[label];
+		}
+		
+		return label;
+	}
+	
+	//Joins two roots, hanging the smaller cluster under the larger, and returns the joined root
+	private int union(int first, int second) {
+		if (first == second) {
+			return first;
+		}
+		
+		if (size[first] < size[second]) {
+			int temp = first;
+			first = second;
+			second = temp;
+		}
+		
+		parent[second] = first;
+		size[first] += size[second];
+		flags[first] |= flags[second];
+		
+		return first;
+	}
+	
+	//Main method that accepts the name of a grid file and the length of the grid then prints the results.
+	public static void main(String[] args) throws IOException {
+		String fileName = args[0];
+		int gridLength = Integer.parseInt(args[1]);
+		
+		PercolationStream stream = new PercolationStream(fileName, gridLength);
+		
+		StdOut.println("percolates              = " + stream.percolates());
+		StdOut.println("open sites              = " + stream.openSites());
+		StdOut.println("clusters                = " + stream.clusterCount());
+		StdOut.println("largest cluster         = " + stream.largestClusterSize());
+	}
+}
@@ -0,0 +1,159 @@
+import java.util.SplittableRandom;
+
+//PercolationSweep measures the whole percolation curve with the Newman-Ziff algorithm. Each trial opens every
+//cell of a grid one at a time in random order, recording after each open whether the grid percolates, the size
+//of its largest component and the size of the components spanning top to bottom. Averaged over trials these give
+//the observables for a fixed number of open cells, which are then convolved with the binomial distribution to
+//give their values for any probability p of a cell being open, all from one pass per trial.
+public class PercolationSweep {
+	
+	//The number of cells in the grid
+	private final int siteCount;
+	
+	//The number of trials performed
+	private final int trialCount;
+	
+	//Sums over all trials of each observable after n cells are open, indexed by n
+	private final double[] percolatingSums;
+	private final double[] largestComponentSums;
+	private final double[] spanningComponentSums;
+	
+	//Constructor, accepts the size of the grid, number of trials and a seed, then performs the trials.
+	public PercolationSweep(int gridSize, int numberOfTrials, long seed) {
+		if(gridSize <= 0 || numberOfTrials <= 0) {
+			throw new IllegalArgumentException("Input must be a positive integer greater than 0");
+		}
+		
+		this.siteCount = gridSize * gridSize;
+		this.trialCount = numberOfTrials;
+		this.percolatingSums = new double[siteCount + 1];
+		this.largestComponentSums = new double[siteCount + 1];
+		this.spanningComponentSums = new double[siteCount + 1];
+		
+		Percolation perc = new Percolation(gridSize);
+		SplittableRandom random = new SplittableRandom(seed);
+		int[] sites = new int[siteCount];
+		
+		for(int k = 0; k < siteCount; k++) {
+			sites[k] = k;
+		}
+		
+		for(int trial = 0; trial < trialCount; trial++) {
+			perc.reset();
+			
+			//Open the cells in the order of a Fisher-Yates shuffle drawn one step at a time
+			for(int opened = 0; opened < siteCount; opened++) {
+				int swapIndex = opened + random.nextInt(siteCount - opened);
+				int site = sites[swapIndex];
+				sites[swapIndex] = sites[opened];
+				sites[opened] = site;
+				
+				perc.openSite(site);
+				
+				if (perc.percolates()) {
+					percolatingSums[opened + 1]++;
+				}
+				largestComponentSums[opened + 1] += perc.largestComponentSize();
+				spanningComponentSums[opened + 1] += perc.spanningComponentSize();
+			}
+		}
+	}
+	
+	//Returns the number of cells in the grid, the largest number of open cells the curve is measured at.
+	public int siteCount() {
+		return siteCount;
+	}
+	
+	//Returns the proportion of trials that percolated once openSites cells were open.
+	public double percolationProbability(int openSites) {
+		return percolatingSums[checkOpenSites(openSites)] / trialCount;
+	}
+	
+	//Returns the mean fraction of cells in the largest component once openSites cells were open.
+	public double largestComponentFraction(int openSites) {
+		return largestComponentSums[checkOpenSites(openSites)] / trialCount / siteCount;
+	}
+	
+	//Returns the mean fraction of cells in components spanning top to bottom once openSites cells were open.
+	public double spanningComponentFraction(int openSites) {
+		return spanningComponentSums[checkOpenSites(openSites)] / trialCount / siteCount;
+	}
+	
+	//Returns the probability that the grid percolates when each cell is open with probability p.
+	public double percolationProbability(double p) {
+		return convolve(percolatingSums, p) / trialCount;
+	}
+	
+	//Returns the expected fraction of cells in the largest component when each cell is open with probability p.
+	public double largestComponentFraction(double p) {
+		return convolve(largestComponentSums, p) / trialCount / siteCount;
+	}
+	
+	//Returns the expected fraction of cells in spanning components when each cell is open with probability p.
+	public double spanningComponentFraction(double p) {
+		return convolve(spanningComponentSums, p) / trialCount / siteCount;
+	}
+	
+	//Weights the values for each number of open cells n by the binomial probability of n cells being open.
+	//The weights are built outwards from the most likely n by their ratio to the neighbouring weight, and
+	//stop once they are too small to matter, which avoids the overflow of computing each one directly.
+	private double convolve(double[] values, double p) {
+		if (p < 0.0 || p > 1.0 || Double.isNaN(p)) {
+			throw new IllegalArgumentException("Probability must be between 0 and 1");
+		}
+		if (p == 0.0) {
+			return values[0];
+		}
+		if (p == 1.0) {
+			return values[siteCount];
+		}
+		
+		int mode = (int) Math.min(siteCount, Math.floor(p * (siteCount + 1)));
+		double odds = p / (1.0 - p);
+		double weightTotal = 1.0;
+		double sum = values[mode];
+		
+		double weight = 1.0;
+		for(int n = mode; n < siteCount && weight > 1e-16; n++) {
+			weight *= (double) (siteCount - n) / (n + 1) * odds;
+			weightTotal += weight;
+			sum += weight * values[n + 1];
+		}
+		
+		weight = 1.0;
+		for(int n = mode; n > 0 && weight > 1e-16; n--) {
+			weight *= (double) n / (siteCount - n + 1) / odds;
+			weightTotal += weight;
+			sum += weight * values[n - 1];
+		}
+		
+		return sum / weightTotal;
+	}
+	
+	//checks the number of open cells is one the curve was measured at
+	private int checkOpenSites(int openSites) {
+		if (openSites < 0 || openSites > siteCount) {
+			throw new IndexOutOfBoundsException("Open site count must be between 0 and the number of cells");
+		}
+		return openSites;
+	}
+	
+	//Main method that accepts the trial count and the size of the grid, in the same order as PercolationStats, and
+	//optionally the number of points to print and a seed, then prints the percolation probability and component
+	//fractions against p.
+	public static void main(String[] args) {
+		int trialCount = Integer.parseInt(args[0]);
+		int gridSize = Integer.parseInt(args[1]);
+		int points = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+		
+		PercolationSweep sweep = new PercolationSweep(gridSize, trialCount, seed);
+		
+		StdOut.println("p\tpercolates\tlargest\tspanning");
+		for(int k = 0; k <= points; k++) {
+			double p = (double) k / points;
+			StdOut.println(p + "\t" + sweep.percolationProbability(p) + "\t"
+					+ sweep.largestComponentFraction(p) + "\t" + sweep.spanningComponentFraction(p));
+		}
+	}
+}
@@ -0,0 +1,109 @@
+import java.util.SplittableRandom;
+
+/** AliasSampler draws items at random with chance in proportion to fixed
+ * weights in O(1) a draw, by Walker's alias method as built by Vose. Each
+ * of the n items owns a bucket, which it shares with at most one other
+ * item, its alias. A draw picks a bucket uniformly, then either its owner
+ * or its alias by a single biased coin. Building the table takes O(n). */
+public class AliasSampler<Item> {
+	
+	private final Item[] items;
+	
+	/** Chance that a draw landing in each bucket returns the owner rather than the alias */
+	private final double[] ownerChance;
+	
+	/** Index of the item sharing each bucket */
+	private final int[] alias;
+	
+	private final SplittableRandom random;
+	
+	/** Constructor that builds the table for the items and their weights,
+	 * which must be positive and finite. The arrays are not kept. */
+	public AliasSampler(Item[] items, double[] weights) {
+		this(items, weights, new SplittableRandom());
+	}
+	
+	/** Constructor that builds the table for the items and their weights,
+	 * drawing from the given generator, which it takes over. */
+	public AliasSampler(Item[] items, double[] weights, SplittableRandom random) {
+		if (items.length != weights.length) {
+			throw new IllegalArgumentException("There must be one weight per item.");
+		}
+		if (items.length == 0) {
+			throw new IllegalArgumentException("Cannot sample from no items.");
+		}
+		if (random == null) {
+			throw new NullPointerException("Random generator cannot be null.");
+		}
+		
+		int n = items.length;
+		this.items = items.clone();
+		this.ownerChance = new double[n];
+		this.alias = new int[n];
+		this.random = random;
+		
+		double total = 0;
+		for(double weight : weights) {
+			if (!(weight > 0) || Double.isInfinite(weight)) {
+				throw new IllegalArgumentException("Weights must be positive and finite.");
+			}
+			total += weight;
+		}
+		
+		//Scale the weights so the average is 1, then split the buckets into under and over full
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallCount = 0;
+		int largeCount = 0;
+		
+		for(int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if (scaled[i] < 1.0) {
+				small[smallCount++] = i;
+			} else {
+				large[largeCount++] = i;
+			}
+		}
+		
+		//Top up each under full bucket from an over full item, which becomes its alias
+		while(smallCount > 0 && largeCount > 0) {
+			int under = small[--smallCount];
+			int over = large[--largeCount];
+			
+			ownerChance[under] = scaled[under];
+			alias[under] = over;
+			
+			scaled[over] -= 1.0 - scaled[under];
+			if (scaled[over] < 1.0) {
+				small[smallCount++] = over;
+			} else {
+				large[largeCount++] = over;
+			}
+		}
+		
+		//Whatever is left is full up to rounding error
+		while(largeCount > 0) {
+			ownerChance[large[--largeCount]] = 1.0;
+		}
+		while(smallCount > 0) {
+			ownerChance[small[--smallCount]] = 1.0;
+		}
+	}
+	
+	/** Returns the number of items that can be drawn. */
+	public int size() {
+		return items.length;
+	}
+	
+	/** Returns an item chosen at random in proportion to its weight. */
+	public Item sample() {
+		return items[sampleIndex()];
+	}
+	
+	/** Returns the index of an item chosen at random in proportion to its weight. */
+	public int sampleIndex() {
+		int bucket = RandomIndex.uniform(random, items.length);
+		return random.nextDouble() < ownerChance[bucket] ? bucket : alias[bucket];
+	}
+}
@@ -1,5 +1,7 @@
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /** Deque is a generic double ended queue / stack hybrid where
  * new items can be added or removed from either end. */
@@ -131,6 +133,77 @@ public class Deque<Item> implements Iterable<Item> {
 		return new ListIterator();
 	}
 	
+	/** Returns a spliterator over all items from front to rear that knows
+	 * its size and splits into halves, so a parallel stream over the deque
+	 * from StreamSupport divides the work evenly between threads. */
+	@Override
+	public Spliterator<Item> spliterator() {
+		return new DequeSpliterator(first, size);
+	}
+	
+	/** DequeSpliterator covers count nodes starting at start. Splitting walks
+	 * to the middle node, which is O(n) for the nodes covered, but only
+	 * happens a few times for each thread splitting the work. */
+	private class DequeSpliterator implements Spliterator<Item> {
+		private Node current;
+		private int remaining;
+		
+		DequeSpliterator(Node start, int count) {
+			this.current = start;
+			this.remaining = count;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super Item> action) {
+			if (remaining == 0) {
+				return false;
+			}
+			
+			Item item = current.item;
+			current = current.next;
+			remaining--;
+			
+			action.accept(item);
+			return true;
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super Item> action) {
+			for(; remaining > 0; remaining--) {
+				Item item = current.item;
+				current = current.next;
+				action.accept(item);
+			}
+		}
+		
+		/** Hands the front half to a new spliterator and keeps the rear half */
+		@Override
+		public Spliterator<Item> trySplit() {
+			int half = remaining / 2;
+			if (half == 0) {
+				return null;
+			}
+			
+			Node start = current;
+			for(int i = 0; i < half; i++) {
+				current = current.next;
+			}
+			remaining -= half;
+			
+			return new DequeSpliterator(start, half);
+		}
+		
+		@Override
+		public long estimateSize() {
+			return remaining;
+		}
+		
+		@Override
+		public int characteristics() {
+			return ORDERED | SIZED | SUBSIZED | NONNULL;
+		}
+	}
+	
 	private class ListIterator implements Iterator<Item> {
 		private Node current = first;
 		
@@ -0,0 +1,207 @@
+import java.util.ConcurrentModificationException;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.SplittableRandom;
+
+/** IntRandomizedQueue is RandomizedQueue specialised to int items, kept
+ * in an int array so no item is ever boxed. Items are enqueued, dequeued
+ * and sampled the same way, the array resizes by the same rules, and the
+ * iterator hands items out in the same lazily shuffled order. */
+public class IntRandomizedQueue implements Iterable<Integer> {
+	
+	private int[] queue;
+	private int size;
+	
+	/** This queue's own generator, so queues on different threads never contend for one */
+	private final SplittableRandom random;
+	
+	/** Counts enqueues and dequeues, so iterators can tell the queue changed under them */
+	private int modCount = 0;
+	
+	/** Constructor to create a new randomised queue. */
+	public IntRandomizedQueue() {
+		this(new SplittableRandom());
+	}
+	
+	/** Constructor to create a new randomised queue whose random choices
+	 * are repeated exactly by any other queue given the same seed. */
+	public IntRandomizedQueue(long seed) {
+		this(new SplittableRandom(seed));
+	}
+	
+	/** Constructor to create a new randomised queue drawing from the given
+	 * generator, which it takes over and must not be used elsewhere. */
+	public IntRandomizedQueue(SplittableRandom random) {
+		if (random == null) {
+			throw new NullPointerException("Random generator cannot be null.");
+		}
+		
+		this.random = random;
+		
+		int defaultSize = 1;
+		
+		this.queue = new int[defaultSize];
+		this.size = 0;
+	}
+	
+	/** Returns true if the queue is empty. */
+	public boolean isEmpty() {
+		return (this.size == 0);
+	}
+	
+	/** Returns the size of the queue. */
+	public int size() {
+		return this.size;
+	}
+	
+	/** Adds a new item to the queue. */
+	public void enqueue(int item) {
+		if (this.size == queue.length) {
+			int[] resizedQueue = new int[queue.length * 2];
+			
+			System.arraycopy(queue, 0, resizedQueue, 0, queue.length);
+			
+			this.queue = resizedQueue;
+		}
+		
+		queue[size] = item;
+		
+		this.size++;
+		this.modCount++;
+	}
+	
+	/** Removes and returns an item at random from the queue. */
+	public int dequeue() {
+		if (isEmpty()) {
+			throw new NoSuchElementException("Queue is currently empty.");
+		}
+		
+		int rand = getRandomOccupiedIndex();
+		int dequeued = queue[rand];
+		
+		this.size--;
+		this.modCount++;
+		
+		queue[rand] = queue[this.size];
+		
+		shrinkIfSparse();
+		
+		return dequeued;
+	}
+	
+	/** Removes k items at random from the queue into dest[0] to dest[k - 1],
+	 * in random order. A partial Fisher-Yates shuffle moves each chosen item
+	 * to the end of the queue, so the batch costs O(k) and the array is
+	 * resized at most once, at the end, rather than once per item. */
+	public void dequeueBatch(int k, int[] dest) {
+		checkBatch(k, dest.length);
+		
+		for(int j = 0; j < k; j++) {
+			int last = this.size - 1 - j;
+			int rand = RandomIndex.uniform(random, last + 1);
+			
+			int chosen = queue[rand];
+			queue[rand] = queue[last];
+			queue[last] = chosen;
+			dest[j] = chosen;
+		}
+		
+		this.size -= k;
+		this.modCount++;
+		
+		shrinkIfSparse();
+	}
+	
+	/** Copies k distinct items chosen at random from the queue into dest[0]
+	 * to dest[k - 1], in random order, without removing them. Indices are
+	 * drawn from a lazy shuffle, so the queue itself is left untouched and
+	 * running iterators carry on. Costs O(k) however large the queue is. */
+	public void sampleDistinct(int k, int[] dest) {
+		checkBatch(k, dest.length);
+		
+		LazyShuffle order = new LazyShuffle(this.size, random);
+		for(int j = 0; j < k; j++) {
+			dest[j] = queue[order.next()];
+		}
+	}
+	
+	/** Checks a batch of k items can be taken from the queue into an array of the given length. */
+	private void checkBatch(int k, int destLength) {
+		if (k < 0) {
+			throw new IllegalArgumentException("Batch size cannot be negative.");
+		}
+		if (k > this.size) {
+			throw new NoSuchElementException("Queue holds fewer than " + k + " items.");
+		}
+		if (k > destLength) {
+			throw new IllegalArgumentException("Destination array is shorter than the batch.");
+		}
+	}
+	
+	/** Halves the array while it is no more than a quarter full, copying the items once. */
+	private void shrinkIfSparse() {
+		int capacity = queue.length;
+		while(capacity > 4 && this.size <= capacity / 4) {
+			capacity /= 2;
+		}
+		
+		if (capacity != queue.length) {
+			int[] resizedQueue = new int[capacity];
+			
+			System.arraycopy(queue, 0, resizedQueue, 0, this.size);
+			
+			this.queue = resizedQueue;
+		}
+	}
+	
+	/** Returns an item at random without deleting it. */
+	public int sample() {
+		if (isEmpty()) {
+			throw new NoSuchElementException("Queue is currently empty.");
+		}
+		
+		return queue[getRandomOccupiedIndex()];
+	}
+	
+	/** Returns a random index below size, every one of which holds an item. */
+	private int getRandomOccupiedIndex() {
+		return RandomIndex.uniform(random, this.size);
+	}
+	
+	/** Returns an iterator object to allow random iteration through queue.
+	 * Use nextInt rather than next to take items without boxing them.
+	 * Each iterator draws from a generator split off the queue's own, so
+	 * iterators are independent of each other yet repeat with the seed.
+	 * The queue must not be changed while an iterator is in use. */
+	public PrimitiveIterator.OfInt iterator() {
+		return new ListIterator();
+	}
+	
+	private class ListIterator implements PrimitiveIterator.OfInt {
+		
+		private final LazyShuffle order = new LazyShuffle(size, random.split());
+		private final int expectedModCount = modCount;
+		
+		@Override
+		public boolean hasNext() {
+			return order.hasNext();
+		}
+		
+		@Override
+		public int nextInt() {
+			if(!hasNext()) {
+				throw new NoSuchElementException("No more objects to iterate through");
+			}
+			if(modCount != expectedModCount) {
+				throw new ConcurrentModificationException("Queue changed during iteration");
+			}
+			
+			return queue[order.next()];
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Remove method not supported");
+		}
+	}
+}
@@ -0,0 +1,115 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/** LazyShuffle hands out the numbers 0 to n - 1 in a uniformly random
+ * order, one at a time, by running a Fisher-Yates shuffle of them as it
+ * goes. Only the positions the shuffle has moved are remembered, in an
+ * open addressing map from position to number, so taking k numbers costs
+ * O(k) time and memory however large n is. */
+final class LazyShuffle {
+	
+	private static final int MIN_CAPACITY = 16;
+	private static final int EMPTY = -1;
+	
+	private final SplittableRandom random;
+	
+	/** The numbers not yet handed out sit at positions 0 to remaining - 1 */
+	private int remaining;
+	
+	/** Positions that have been moved, and the number now at each, EMPTY keys are free slots */
+	private int[] keys;
+	private int[] values;
+	private int entries = 0;
+	
+	/** Constructor that creates a shuffle of the numbers 0 to n - 1, drawing from random */
+	LazyShuffle(int n, SplittableRandom random) {
+		this.random = random;
+		this.remaining = n;
+		this.keys = new int[MIN_CAPACITY];
+		this.values = new int[MIN_CAPACITY];
+		Arrays.fill(keys, EMPTY);
+	}
+	
+	/** Returns true if there are numbers left to hand out */
+	boolean hasNext() {
+		return remaining > 0;
+	}
+	
+	/** Returns the next number in the shuffled order */
+	int next() {
+		if (remaining == 0) {
+			throw new NoSuchElementException("No more numbers to hand out");
+		}
+		
+		//Swap a random remaining position with the last one and hand out what was at the random position
+		int last = remaining - 1;
+		int position = RandomIndex.uniform(random, remaining);
+		int number = get(position);
+		
+		if (position != last) {
+			put(position, get(last));
+		}
+		remaining--;
+		
+		return number;
+	}
+	
+	/** Returns the number at a position, the position itself if it has not moved */
+	private int get(int position) {
+		int mask = keys.length - 1;
+		for(int slot = hash(position) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (keys[slot] == position) {
+				return values[slot];
+			}
+		}
+		return position;
+	}
+	
+	/** Records the number now at a position */
+	private void put(int position, int number) {
+		if (2 * (entries + 1) > keys.length) {
+			rehash(keys.length * 2);
+		}
+		
+		int mask = keys.length - 1;
+		int slot = hash(position) & mask;
+		while(keys[slot] != EMPTY && keys[slot] != position) {
+			slot = (slot + 1) & mask;
+		}
+		
+		if (keys[slot] == EMPTY) {
+			keys[slot] = position;
+			entries++;
+		}
+		values[slot] = number;
+	}
+	
+	/** Moves every entry into tables of the given power of two length */
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		
+		this.keys = new int[capacity];
+		this.values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+		
+		int mask = capacity - 1;
+		for(int k = 0; k < oldKeys.length; k++) {
+			if (oldKeys[k] != EMPTY) {
+				int slot = hash(oldKeys[k]) & mask;
+				while(keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[k];
+				values[slot] = oldValues[k];
+			}
+		}
+	}
+	
+	/** Spreads consecutive positions over the table */
+	private static int hash(int position) {
+		int h = position * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,37 @@
+import java.util.SplittableRandom;
+
+/** RandomIndex picks uniformly random array indices from a caller's own
+ * SplittableRandom, so every queue draws from its own generator with no
+ * shared state between threads and can be seeded to repeat a run. */
+final class RandomIndex {
+	
+	private static final long UNSIGNED_INT_MASK = 0xFFFFFFFFL;
+	
+	private RandomIndex() { }
+	
+	/** Returns a uniformly random int from 0 to bound - 1, by Lemire's
+	 * multiply-shift method. A random 32 bit number times bound is split
+	 * into its high half, the result, and its low half, which is only
+	 * compared with a threshold to reject the few draws that would bias
+	 * the result. That threshold needs a division, but it is worked out
+	 * only when the low half is below bound, so almost never. */
+	static int uniform(SplittableRandom random, int bound) {
+		if (bound <= 0) {
+			throw new IllegalArgumentException("Bound must be positive");
+		}
+		
+		long product = (random.nextInt() & UNSIGNED_INT_MASK) * bound;
+		long low = product & UNSIGNED_INT_MASK;
+		
+		if (low < bound) {
+			//2^32 mod bound, the number of draws that must be rejected
+			long threshold = (1L << 32) % bound;
+			while(low < threshold) {
+				product = (random.nextInt() & UNSIGNED_INT_MASK) * bound;
+				low = product & UNSIGNED_INT_MASK;
+			}
+		}
+		
+		return (int) (product >>> 32);
+	}
+}
@@ -1,5 +1,9 @@
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
 
 /** RandomizedQueue is a generic array-implemented queue that
  * will dequeue items at random. It will also iterate at random. */
@@ -8,8 +12,32 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
 	private Item[] queue;
 	private int size;
 	
+	/** This queue's own generator, so queues on different threads never contend for one */
+	private final SplittableRandom random;
+	
+	/** Counts enqueues and dequeues, so iterators can tell the queue changed under them */
+	private int modCount = 0;
+	
 	/** Constructor to create a new randomised queue. */
 	public RandomizedQueue() {
+		this(new SplittableRandom());
+	}
+	
+	/** Constructor to create a new randomised queue whose random choices
+	 * are repeated exactly by any other queue given the same seed. */
+	public RandomizedQueue(long seed) {
+		this(new SplittableRandom(seed));
+	}
+	
+	/** Constructor to create a new randomised queue drawing from the given
+	 * generator, which it takes over and must not be used elsewhere. */
+	public RandomizedQueue(SplittableRandom random) {
+		if (random == null) {
+			throw new NullPointerException("Random generator cannot be null.");
+		}
+		
+		this.random = random;
+		
 		int defaultSize = 1;
 		
 		this.queue = (Item[]) new Object[defaultSize];
@@ -45,6 +73,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
 		queue[size] = item;
 		
 		this.size++;
+		this.modCount++;
 	}
 	
 	/** Removes and returns an item at random from the queue. */
@@ -57,21 +86,83 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
 		Item dequeued = queue[rand];
 		
 		this.size--;
+		this.modCount++;
 		
 		queue[rand] = queue[this.size];
 		queue[this.size] = null;
 		
-		if (this.queue.length > 4 && this.size <= queue.length / 4) {
-			Item [] resizedQueue = (Item[]) new Object[queue.length / 2];
+		shrinkIfSparse();
+		
+		return dequeued;
+	}
+	
+	/** Removes k items at random from the queue into dest[0] to dest[k - 1],
+	 * in random order. A partial Fisher-Yates shuffle moves each chosen item
+	 * to the end of the queue, so the batch costs O(k) and the array is
+	 * resized at most once, at the end, rather than once per item. */
+	public void dequeueBatch(int k, Item[] dest) {
+		checkBatch(k, dest.length);
+		
+		for(int j = 0; j < k; j++) {
+			int last = this.size - 1 - j;
+			int rand = RandomIndex.uniform(random, last + 1);
 			
-			for(int i = 0; i < this.size; i++) {
-				resizedQueue[i] = queue[i];
-			}
+			Item chosen = queue[rand];
+			queue[rand] = queue[last];
+			queue[last] = chosen;
+			dest[j] = chosen;
+		}
+		
+		this.size -= k;
+		this.modCount++;
+		
+		for(int j = 0; j < k; j++) {
+			queue[this.size + j] = null;
+		}
+		
+		shrinkIfSparse();
+	}
+	
+	/** Copies k distinct items chosen at random from the queue into dest[0]
+	 * to dest[k - 1], in random order, without removing them. Indices are
+	 * drawn from a lazy shuffle, so the queue itself is left untouched and
+	 * running iterators carry on. Costs O(k) however large the queue is. */
+	public void sampleDistinct(int k, Item[] dest) {
+		checkBatch(k, dest.length);
+		
+		LazyShuffle order = new LazyShuffle(this.size, random);
+		for(int j = 0; j < k; j++) {
+			dest[j] = queue[order.next()];
+		}
+	}
+	
+	/** Checks a batch of k items can be taken from the queue into an array of the given length. */
+	private void checkBatch(int k, int destLength) {
+		if (k < 0) {
+			throw new IllegalArgumentException("Batch size cannot be negative.");
+		}
+		if (k > this.size) {
+			throw new NoSuchElementException("Queue holds fewer than " + k + " items.");
+		}
+		if (k > destLength) {
+			throw new IllegalArgumentException("Destination array is shorter than the batch.");
+		}
+	}
+	
+	/** Halves the array while it is no more than a quarter full, copying the items once. */
+	private void shrinkIfSparse() {
+		int capacity = queue.length;
+		while(capacity > 4 && this.size <= capacity / 4) {
+			capacity /= 2;
+		}
+		
+		if (capacity != queue.length) {
+			Item[] resizedQueue = (Item[]) new Object[capacity];
+			
+			System.arraycopy(queue, 0, resizedQueue, 0, this.size);
 			
 			this.queue = resizedQueue;
 		}
-		
-		return dequeued;
 	}
 	
 	/** Returns an item at random without deleting it. */
@@ -86,45 +177,126 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
 	/** Returns an integer of a random index which is not null. */
 	private int getRandomOccupiedIndex() {
 		while(true) {
-			int rand = StdRandom.uniform(this.size);
+			int rand = RandomIndex.uniform(random, this.size);
 			if(queue[rand] != null) {
 				return rand;
 			}
 		}
 	}
 	
-	/** Returns an iterator object to allow random iteration through queue. */
+	/** Returns an iterator object to allow random iteration through queue.
+	 * Items are drawn as the iterator goes rather than shuffled up front,
+	 * so taking the first k items costs O(k) however large the queue is,
+	 * and any number of iterators can run at once without copying it.
+	 * Each iterator draws from a generator split off the queue's own, so
+	 * iterators are independent of each other yet repeat with the seed.
+	 * The queue must not be changed while an iterator is in use. */
 	public Iterator<Item> iterator() {
-		return new ListIterator(queue, size);
+		return new ListIterator();
 	}
 	
-	private class ListIterator implements Iterator<Item> {
+	/** Returns a spliterator over the queue in random order that knows its
+	 * size and splits into halves holding a random, disjoint share of the
+	 * items each, so a parallel stream over the queue from StreamSupport
+	 * divides the work evenly between threads. It shares the iterator's
+	 * rule that the queue must not change while it is in use. */
+	@Override
+	public Spliterator<Item> spliterator() {
+		int[] order = new int[size];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
 		
-		private Item[] iteratorQueue;
-		private int iteratorIndex = 0;
+		return new RandomSpliterator(order, 0, order.length, random.split());
+	}
+	
+	/** RandomSpliterator covers the indices held in order[from] to order[to - 1].
+	 * Both advancing and splitting are steps of a Fisher-Yates shuffle of
+	 * that range, so each item handed out or split off is a uniform choice
+	 * from those left, and the whole traversal is a uniform random order. */
+	private class RandomSpliterator implements Spliterator<Item> {
+		private final int[] order;
+		private int from;
+		private final int to;
+		private final SplittableRandom random;
+		private final int expectedModCount = modCount;
+		
+		RandomSpliterator(int[] order, int from, int to, SplittableRandom random) {
+			this.order = order;
+			this.from = from;
+			this.to = to;
+			this.random = random;
+		}
 		
-		public ListIterator(Item[] queue, int size) {
+		@Override
+		public boolean tryAdvance(Consumer<? super Item> action) {
+			if (from >= to) {
+				return false;
+			}
 			
-			iteratorQueue = (Item[]) new Object[size];
+			action.accept(queue[nextIndex()]);
+			return true;
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super Item> action) {
+			while(from < to) {
+				action.accept(queue[nextIndex()]);
+			}
+		}
+		
+		/** Shuffles a random half of the range to its front and hands that to a new spliterator */
+		@Override
+		public Spliterator<Item> trySplit() {
+			int mid = (from + to) >>> 1;
+			if (mid == from) {
+				return null;
+			}
 			
-			//Copy items into iterator queue
-			for(int i = 0; i < iteratorQueue.length; i++) {
-				iteratorQueue[i] = queue[i];
+			for(int i = from; i < mid; i++) {
+				swap(i, i + RandomIndex.uniform(random, to - i));
 			}
 			
-			//Knuth shuffle the iterator queue
-			for(int j = 1; j < iteratorQueue.length; j++) {
-				int swapIndex = StdRandom.uniform(j + 1);
-				
-				Item temp = iteratorQueue[j];
-				iteratorQueue[j] = iteratorQueue[swapIndex];
-				iteratorQueue[swapIndex] = temp;
+			Spliterator<Item> front = new RandomSpliterator(order, from, mid, random.split());
+			from = mid;
+			return front;
+		}
+		
+		@Override
+		public long estimateSize() {
+			return to - from;
+		}
+		
+		@Override
+		public int characteristics() {
+			return SIZED | SUBSIZED | NONNULL;
+		}
+		
+		/** Swaps a random index of the range to its front and takes it */
+		private int nextIndex() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException("Queue changed during iteration");
 			}
+			
+			swap(from, from + RandomIndex.uniform(random, to - from));
+			return order[from++];
+		}
+		
+		private void swap(int i, int j) {
+			int temp = order[i];
+			order[i] = order[j];
+			order[j] = temp;
 		}
+	}
+	
+	private class ListIterator implements Iterator<Item> {
+		
+		private final LazyShuffle order = new LazyShuffle(size, random.split());
+		private final int expectedModCount = modCount;
 		
 		@Override
 		public boolean hasNext() {
-			return (iteratorIndex < iteratorQueue.length);
+			return order.hasNext();
 		}
 
 		@Override
@@ -132,10 +304,11 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
 			if(!hasNext()) {
 				throw new NoSuchElementException("No more objects to iterate through");
 			}
+			if(modCount != expectedModCount) {
+				throw new ConcurrentModificationException("Queue changed during iteration");
+			}
 			
-			Item item = iteratorQueue[iteratorIndex];
-			iteratorIndex++;
-			return item;
+			return queue[order.next()];
 		}
 
 		@Override
@@ -0,0 +1,243 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/** RingBufferDeque is a generic double ended queue / stack hybrid with
+ * the same operations as Deque, kept in a circular array instead of
+ * linked nodes so adding and removing at either end allocates nothing.
+ * The array length is always a power of two so positions wrap with a mask. */
+public class RingBufferDeque<Item> implements Iterable<Item> {
+	
+	private static final int MIN_CAPACITY = 8;
+	
+	/** The largest power of two array length, which the deque never grows past */
+	private static final int MAX_CAPACITY = 1 << 30;
+	
+	private Item[] items;
+	private final int minCapacity;
+	private int head = 0;
+	private int size = 0;
+	
+	/** Constructor that creates a new RingBufferDeque */
+	public RingBufferDeque() {
+		this(MIN_CAPACITY);
+	}
+	
+	/** Constructor that creates a new RingBufferDeque with room for at
+	 * least the given number of items before it first has to grow. The
+	 * array is never shrunk below this size, so a presized deque keeps
+	 * its room however far it is drained. */
+	public RingBufferDeque(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Capacity cannot be negative");
+		}
+		if (initialCapacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("Capacity cannot be more than " + MAX_CAPACITY);
+		}
+		
+		int capacity = MIN_CAPACITY;
+		while (capacity < initialCapacity) {
+			capacity *= 2;
+		}
+		
+		this.minCapacity = capacity;
+		this.items = (Item[]) new Object[capacity];
+	}
+	
+	/** Returns true when the RingBufferDeque is empty */
+	public boolean isEmpty() {
+		return (this.size == 0);
+	}
+	
+	/** Returns the size of the RingBufferDeque */
+	public int size() {
+		return this.size;
+	}
+	
+	/** Adds an item to the front of the RingBufferDeque */
+	public void addFirst(Item item) {
+		if (item == null) {
+			throw new NullPointerException("Cannot add null items");
+		}
+		
+		if (size == items.length) {
+			grow();
+		}
+		
+		head = (head - 1) & (items.length - 1);
+		items[head] = item;
+		size++;
+	}
+	
+	/** Adds an item to the end of the RingBufferDeque */
+	public void addLast(Item item) {
+		if (item == null) {
+			throw new NullPointerException("Cannot add null items");
+		}
+		
+		if (size == items.length) {
+			grow();
+		}
+		
+		items[(head + size) & (items.length - 1)] = item;
+		size++;
+	}
+	
+	/** Removes the item from the front of the RingBufferDeque */
+	public Item removeFirst() {
+		if (size() == 0) {
+			throw new NoSuchElementException("Deque is empty");
+		}
+		
+		Item item = items[head];
+		items[head] = null;
+		head = (head + 1) & (items.length - 1);
+		size--;
+		
+		shrinkIfSparse();
+		
+		return item;
+	}
+	
+	/** Removes the item from the rear of the RingBufferDeque */
+	public Item removeLast() {
+		if (size() == 0) {
+			throw new NoSuchElementException("Deque is empty");
+		}
+		
+		int last = (head + size - 1) & (items.length - 1);
+		Item item = items[last];
+		items[last] = null;
+		size--;
+		
+		shrinkIfSparse();
+		
+		return item;
+	}
+	
+	/** Doubles the array, unless it is already as long as it can be */
+	private void grow() {
+		if (items.length == MAX_CAPACITY) {
+			throw new IllegalStateException("Deque cannot hold more than " + MAX_CAPACITY + " items");
+		}
+		resize(items.length * 2);
+	}
+	
+	/** Halves the array once it is a quarter full, so a drained deque gives
+	 * its memory back, but never below the capacity it was created with */
+	private void shrinkIfSparse() {
+		if (items.length > minCapacity && size <= items.length / 4) {
+			resize(items.length / 2);
+		}
+	}
+	
+	/** Copies the items in order to the start of a new array of the given power of two length */
+	private void resize(int capacity) {
+		Item[] resized = (Item[]) new Object[capacity];
+		
+		//Copy the part up to the end of the array, then the part that wrapped round to the start
+		int firstPart = Math.min(size, items.length - head);
+		System.arraycopy(items, head, resized, 0, firstPart);
+		System.arraycopy(items, 0, resized, firstPart, size - firstPart);
+		
+		this.items = resized;
+		this.head = 0;
+	}
+	
+	/** Returns an iterator object to allow iteration through all items from front to rear */
+	public Iterator<Item> iterator() {
+		return new RingIterator();
+	}
+	
+	/** Returns a spliterator over all items from front to rear that knows
+	 * its size and splits its range of positions in half in O(1), so a
+	 * parallel stream over the deque from StreamSupport scales evenly. */
+	@Override
+	public Spliterator<Item> spliterator() {
+		return new RingSpliterator(0, size);
+	}
+	
+	/** RingSpliterator covers the items from index to end, counted from the front */
+	private class RingSpliterator implements Spliterator<Item> {
+		private int index;
+		private final int end;
+		
+		RingSpliterator(int index, int end) {
+			this.index = index;
+			this.end = end;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super Item> action) {
+			if (index >= end) {
+				return false;
+			}
+			
+			action.accept(items[(head + index) & (items.length - 1)]);
+			index++;
+			return true;
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super Item> action) {
+			Item[] array = items;
+			int mask = array.length - 1;
+			
+			for(; index < end; index++) {
+				action.accept(array[(head + index) & mask]);
+			}
+		}
+		
+		/** Hands the front half to a new spliterator and keeps the rear half */
+		@Override
+		public Spliterator<Item> trySplit() {
+			int mid = (index + end) >>> 1;
+			if (mid == index) {
+				return null;
+			}
+			
+			Spliterator<Item> front = new RingSpliterator(index, mid);
+			index = mid;
+			return front;
+		}
+		
+		@Override
+		public long estimateSize() {
+			return end - index;
+		}
+		
+		@Override
+		public int characteristics() {
+			return ORDERED | SIZED | SUBSIZED | NONNULL;
+		}
+	}
+	
+	private class RingIterator implements Iterator<Item> {
+		private int index = 0;
+		
+		/** Returns true if there is an item next in the deque */
+		@Override
+		public boolean hasNext() {
+			return (index < size);
+		}
+		
+		/** returns the current item and moves on to the next */
+		@Override
+		public Item next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException("No more objects to iterate through");
+			}
+			
+			Item item = items[(head + index) & (items.length - 1)];
+			index++;
+			
+			return item;
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Iterator remove function not supported.");
+		}
+	}
+}
@@ -1,28 +1,350 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 /** Subset will print k random strings from an input array of strings.
  * Input is expected to start with number of strings to return,
- * then a space delimited input of strings. */
+ * then a space delimited input of strings. An optional second argument
+ * seeds the random choice, so the same seed and input repeat the output.
+ * The strings are read one at a time and only k are ever held, so the
+ * input can be far larger than memory.
+ *
+ * Given a file name as a third argument, the strings are read from that
+ * file instead, which is memory mapped and sampled in chunks on every
+ * core. An optional fourth argument sets the number of threads. */
 public class Subset {
-	public static void main(String[] args) {
+	
+	/** The file is cut into chunks of about this many bytes, moved on to the next whitespace. The
+	 * chunks do not depend on the thread count, so a seed gives the same output on any machine. */
+	private static final long CHUNK_BYTES = 1L << 26;
+	
+	public static void main(String[] args) throws IOException {
 		int subsetSize = Integer.parseInt(args[0]);
-		String[] inputStrings = StdIn.readStrings();
+		SplittableRandom random = args.length > 1 ? new SplittableRandom(Long.parseLong(args[1])) : new SplittableRandom();
+		
+		if (subsetSize < 0) {
+			throw new IllegalArgumentException("Subset size cannot be negative");
+		}
 		
-		performSubset(subsetSize, inputStrings);
+		if (args.length > 2) {
+			int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+			performFileSubset(subsetSize, args[2], threads, random);
+		} else {
+			performSubset(subsetSize, random);
+		}
 	}
-
-	private static void performSubset(int subsetSize, String[] strings) {
+	
+	/** Reservoir samples k strings from standard input in one pass, by Li's
+	 * Algorithm L. After the reservoir is filled with the first k strings,
+	 * the gap to the next string that gets in is drawn directly from its
+	 * geometric distribution, so the strings in between are read past
+	 * without any random numbers being drawn for them. Each string that
+	 * gets in replaces one at random, which the randomized queue does as
+	 * a dequeue followed by an enqueue, and the reservoir is then printed
+	 * by dequeuing it, so the order is random too. */
+	private static void performSubset(int subsetSize, SplittableRandom random) {
+		RandomizedQueue<String> reservoir = new RandomizedQueue<String>(random.split());
+		
+		//Fill the reservoir with the first k strings
+		while(reservoir.size() < subsetSize && !StdIn.isEmpty()) {
+			reservoir.enqueue(StdIn.readString());
+		}
 		
-		//Knuth shuffle
-		for(int i = 1; i < strings.length; i++) {
-			int randIndex = StdRandom.uniform(i + 1);
+		if (subsetSize > 0) {
+			//weight is the largest of k uniform keys among the strings kept, the chance a later string beats it
+			double weight = Math.exp(Math.log(nextOpenUnit(random)) / subsetSize);
 			
-			String temp = strings[i];
-			strings[i] = strings[randIndex];
-			strings[randIndex] = temp;
+			while(true) {
+				double gap = Math.floor(Math.log(nextOpenUnit(random)) / Math.log1p(-weight));
+				long skip = gap < Long.MAX_VALUE ? (long) gap : Long.MAX_VALUE;
+				
+				for(long s = 0; s < skip && !StdIn.isEmpty(); s++) {
+					StdIn.readString();
+				}
+				if (StdIn.isEmpty()) {
+					break;
+				}
+				
+				reservoir.dequeue();
+				reservoir.enqueue(StdIn.readString());
+				
+				weight *= Math.exp(Math.log(nextOpenUnit(random)) / subsetSize);
+			}
 		}
 		
 		//Output
-		for(int j = 0; j < subsetSize; j++) {
-			StdOut.println(strings[j]);
+		while(!reservoir.isEmpty()) {
+			StdOut.println(reservoir.dequeue());
+		}
+	}
+	
+	/** Samples k strings from a file on several threads. Every string gets
+	 * an independent uniform key and the k strings with the smallest keys
+	 * are printed, smallest first, which is a uniform subset in a uniform
+	 * order. Each chunk of the file finds its own k smallest keys, again by
+	 * Algorithm L so most strings are only scanned past, then the chunk
+	 * reservoirs are merged pairwise keeping the k smallest. Strings are
+	 * held as positions in the mapped chunks and only decoded to print. */
+	private static void performFileSubset(int subsetSize, String fileName, int threads, SplittableRandom random) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			FileChannel channel = file.getChannel();
+			ByteBuffer[] chunks = mapChunks(channel);
+			
+			//Each chunk draws from its own generator, split off in chunk order so the seed fixes them all
+			SplittableRandom[] chunkRandoms = new SplittableRandom[chunks.length];
+			for(int c = 0; c < chunks.length; c++) {
+				chunkRandoms[c] = random.split();
+			}
+			
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			Reservoir reservoir;
+			try {
+				reservoir = pool.invoke(new ChunkTask(chunks, chunkRandoms, subsetSize, 0, chunks.length));
+			} finally {
+				pool.shutdown();
+			}
+			
+			//Output
+			for(int entry : reservoir.entriesByKey()) {
+				StdOut.println(reservoir.decode(entry, chunks));
+			}
+		}
+	}
+	
+	/** Maps the file as chunks of roughly CHUNK_BYTES, each ending just
+	 * before a whitespace byte so no string is split between two chunks */
+	private static ByteBuffer[] mapChunks(FileChannel channel) throws IOException {
+		long fileSize = channel.size();
+		int chunkCount = (int) ((fileSize + CHUNK_BYTES - 1) / CHUNK_BYTES);
+		ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+		
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		long start = 0;
+		for(int c = 0; c < chunkCount; c++) {
+			long end = Math.max(start, Math.min(fileSize, (c + 1) * CHUNK_BYTES));
+			
+			//Move the end on until it reaches whitespace or the end of the file
+			while(end < fileSize) {
+				probe.clear();
+				channel.read(probe, end);
+				probe.flip();
+				
+				int k = 0;
+				while(k < probe.limit() && !isWhitespace(probe.get(k))) {
+					k++;
+				}
+				end += k;
+				
+				if (k < probe.limit()) {
+					break;
+				}
+			}
+			
+			if (end - start > Integer.MAX_VALUE) {
+				throw new IOException("A string starting at byte " + start + " is too long to map");
+			}
+			
+			chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			start = end;
+		}
+		
+		return chunks;
+	}
+	
+	/** Returns true for the ASCII whitespace bytes that separate strings */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0B;
+	}
+	
+	/** Returns a uniformly random double greater than 0 and at most 1, so its log is finite */
+	private static double nextOpenUnit(SplittableRandom random) {
+		return 1.0 - random.nextDouble();
+	}
+	
+	/** Samples a range of chunks, splitting it in two until a single chunk
+	 * is left, and merges the two halves into the left reservoir. */
+	private static class ChunkTask extends RecursiveTask<Reservoir> {
+		private static final long serialVersionUID = 1L;
+		
+		private final ByteBuffer[] chunks;
+		private final SplittableRandom[] chunkRandoms;
+		private final int subsetSize;
+		private final int from;
+		private final int to;
+		
+		ChunkTask(ByteBuffer[] chunks, SplittableRandom[] chunkRandoms, int subsetSize, int from, int to) {
+			this.chunks = chunks;
+			this.chunkRandoms = chunkRandoms;
+			this.subsetSize = subsetSize;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Reservoir compute() {
+			if (to - from <= 1) {
+				Reservoir reservoir = new Reservoir(subsetSize);
+				if (from < to) {
+					reservoir.sampleChunk(chunks[from], from, chunkRandoms[from]);
+				}
+				return reservoir;
+			}
+			
+			int mid = (from + to) >>> 1;
+			ChunkTask right = new ChunkTask(chunks, chunkRandoms, subsetSize, mid, to);
+			right.fork();
+			
+			Reservoir reservoir = new ChunkTask(chunks, chunkRandoms, subsetSize, from, mid).compute();
+			reservoir.merge(right.join());
+			
+			return reservoir;
+		}
+	}
+	
+	/** Reservoir keeps the k strings with the smallest keys seen so far, as
+	 * a binary max heap on key so the string to replace is always at the
+	 * top. A string is kept as its chunk, start and length in bytes. */
+	private static class Reservoir {
+		private final int capacity;
+		private int size = 0;
+		
+		private final double[] keys;
+		private final int[] chunkIndices;
+		private final int[] starts;
+		private final int[] lengths;
+		
+		Reservoir(int capacity) {
+			this.capacity = capacity;
+			this.keys = new double[capacity];
+			this.chunkIndices = new int[capacity];
+			this.starts = new int[capacity];
+			this.lengths = new int[capacity];
+		}
+		
+		/** Runs Algorithm L with explicit keys over the strings of one chunk.
+		 * Once full, the next string to get in follows a geometric gap with
+		 * the largest kept key as its chance, and its key is uniform below
+		 * that largest key, so the keys stay exactly as if every string had
+		 * been given one. */
+		void sampleChunk(ByteBuffer chunk, int chunkIndex, SplittableRandom random) {
+			int position = 0;
+			int limit = chunk.limit();
+			
+			while(true) {
+				//Draw the key first, and how many strings to pass over before the one it belongs to
+				double key;
+				long skip;
+				if (size < capacity) {
+					key = random.nextDouble();
+					skip = 0;
+				} else if (capacity > 0) {
+					double largest = keys[0];
+					double gap = Math.floor(Math.log(nextOpenUnit(random)) / Math.log1p(-largest));
+					skip = gap < Long.MAX_VALUE ? (long) gap : Long.MAX_VALUE;
+					key = largest * random.nextDouble();
+				} else {
+					return;
+				}
+				
+				//Pass over skip strings then find the start and end of the next one
+				int start;
+				long passed = -1;
+				do {
+					while(position < limit && isWhitespace(chunk.get(position))) {
+						position++;
+					}
+					if (position == limit) {
+						return;
+					}
+					start = position;
+					while(position < limit && !isWhitespace(chunk.get(position))) {
+						position++;
+					}
+					passed++;
+				} while(passed < skip);
+				
+				offer(key, chunkIndex, start, position - start);
+			}
+		}
+		
+		/** Adds every string of another reservoir that beats the largest key kept */
+		void merge(Reservoir other) {
+			for(int entry = 0; entry < other.size; entry++) {
+				double key = other.keys[entry];
+				if (size < capacity || key < keys[0]) {
+					offer(key, other.chunkIndices[entry], other.starts[entry], other.lengths[entry]);
+				}
+			}
+		}
+		
+		/** Adds a string, replacing the one with the largest key if full */
+		private void offer(double key, int chunkIndex, int start, int length) {
+			int hole;
+			if (size < capacity) {
+				//Sift the new entry up from the bottom
+				hole = size++;
+				while(hole > 0 && keys[(hole - 1) / 2] < key) {
+					move((hole - 1) / 2, hole);
+					hole = (hole - 1) / 2;
+				}
+			} else {
+				//Sift the new entry down from the top, where it replaces the largest key
+				hole = 0;
+				while(2 * hole + 1 < size) {
+					int child = 2 * hole + 1;
+					if (child + 1 < size && keys[child + 1] > keys[child]) {
+						child++;
+					}
+					if (keys[child] <= key) {
+						break;
+					}
+					move(child, hole);
+					hole = child;
+				}
+			}
+			
+			keys[hole] = key;
+			chunkIndices[hole] = chunkIndex;
+			starts[hole] = start;
+			lengths[hole] = length;
+		}
+		
+		private void move(int from, int to) {
+			keys[to] = keys[from];
+			chunkIndices[to] = chunkIndices[from];
+			starts[to] = starts[from];
+			lengths[to] = lengths[from];
+		}
+		
+		/** Returns the entries in increasing order of key */
+		int[] entriesByKey() {
+			Integer[] order = new Integer[size];
+			for(int entry = 0; entry < size; entry++) {
+				order[entry] = entry;
+			}
+			Arrays.sort(order, (a, b) -> Double.compare(keys[a], keys[b]));
+			
+			int[] entries = new int[size];
+			for(int entry = 0; entry < size; entry++) {
+				entries[entry] = order[entry];
+			}
+			return entries;
+		}
+		
+		/** Copies the bytes of an entry's string out of its chunk and decodes them as UTF-8 */
+		String decode(int entry, ByteBuffer[] chunks) {
+			byte[] bytes = new byte[lengths[entry]];
+			ByteBuffer chunk = chunks[chunkIndices[entry]].duplicate();
+			chunk.position(starts[entry]);
+			chunk.get(bytes);
+			
+			return new String(bytes, StandardCharsets.UTF_8);
 		}
 	}
 }
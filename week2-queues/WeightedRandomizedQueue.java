@@ -0,0 +1,190 @@
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/** WeightedRandomizedQueue is a generic array-implemented queue that
+ * dequeues and samples items at random with chance in proportion to a
+ * weight given to each item as it is enqueued. Weights are summed in a
+ * Fenwick tree over the array, so choosing an item is a descent through
+ * the tree and enqueue, dequeue and sample all take O(log n). */
+public class WeightedRandomizedQueue<Item> {
+	
+	private Item[] queue;
+	private double[] weights;
+	private int size;
+	
+	/** Fenwick tree of the weights, tree[i] is the sum of weights i - lowbit(i) to i - 1 */
+	private double[] tree;
+	
+	/** This queue's own generator, so queues on different threads never contend for one */
+	private final SplittableRandom random;
+	
+	/** Constructor to create a new weighted randomised queue. */
+	public WeightedRandomizedQueue() {
+		this(new SplittableRandom());
+	}
+	
+	/** Constructor to create a new weighted randomised queue whose random
+	 * choices are repeated exactly by any other queue given the same seed. */
+	public WeightedRandomizedQueue(long seed) {
+		this(new SplittableRandom(seed));
+	}
+	
+	/** Constructor to create a new weighted randomised queue drawing from
+	 * the given generator, which it takes over and must not be used elsewhere. */
+	public WeightedRandomizedQueue(SplittableRandom random) {
+		if (random == null) {
+			throw new NullPointerException("Random generator cannot be null.");
+		}
+		
+		this.random = random;
+		
+		int defaultSize = 1;
+		
+		this.queue = (Item[]) new Object[defaultSize];
+		this.weights = new double[defaultSize];
+		this.tree = new double[defaultSize + 1];
+		this.size = 0;
+	}
+	
+	/** Returns true if the queue is empty. */
+	public boolean isEmpty() {
+		return (this.size == 0);
+	}
+	
+	/** Returns the size of the queue. */
+	public int size() {
+		return this.size;
+	}
+	
+	/** Returns the sum of the weights of every item in the queue. */
+	public double totalWeight() {
+		return prefixSum(this.size);
+	}
+	
+	/** Adds a new item to the queue with the given weight, which must be positive and finite. */
+	public void enqueue(Item item, double weight) {
+		if (item == null) {
+			throw new NullPointerException("Cannot enqueue null objects.");
+		}
+		if (!(weight > 0) || Double.isInfinite(weight)) {
+			throw new IllegalArgumentException("Weight must be positive and finite.");
+		}
+		
+		if (this.size == queue.length) {
+			resize(queue.length * 2);
+		}
+		
+		queue[size] = item;
+		weights[size] = weight;
+		add(size, weight);
+		
+		this.size++;
+	}
+	
+	/** Removes and returns an item chosen at random in proportion to its weight. */
+	public Item dequeue() {
+		if (isEmpty()) {
+			throw new NoSuchElementException("Queue is currently empty.");
+		}
+		
+		int chosen = getRandomWeightedIndex();
+		Item dequeued = queue[chosen];
+		
+		//Move the last item into the chosen slot, so the items stay packed at the front
+		int last = this.size - 1;
+		add(chosen, weights[last] - weights[chosen]);
+		add(last, -weights[last]);
+		
+		queue[chosen] = queue[last];
+		weights[chosen] = weights[last];
+		queue[last] = null;
+		weights[last] = 0;
+		
+		this.size--;
+		
+		if (this.queue.length > 4 && this.size <= queue.length / 4) {
+			resize(queue.length / 2);
+		}
+		
+		return dequeued;
+	}
+	
+	/** Returns an item chosen at random in proportion to its weight, without deleting it. */
+	public Item sample() {
+		if (isEmpty()) {
+			throw new NoSuchElementException("Queue is currently empty.");
+		}
+		
+		return queue[getRandomWeightedIndex()];
+	}
+	
+	/** Returns an AliasSampler over the items and weights in the queue now,
+	 * for drawing from a set that no longer changes in O(1) a draw. */
+	public AliasSampler<Item> toAliasSampler() {
+		Item[] items = (Item[]) new Object[this.size];
+		double[] itemWeights = new double[this.size];
+		
+		System.arraycopy(queue, 0, items, 0, this.size);
+		System.arraycopy(weights, 0, itemWeights, 0, this.size);
+		
+		return new AliasSampler<Item>(items, itemWeights, random.split());
+	}
+	
+	/** Returns the index whose weight covers a uniform point below the total
+	 * weight. The tree is descended from its largest power of two, moving
+	 * right past every subtree whose sum is still below the point. */
+	private int getRandomWeightedIndex() {
+		double target = random.nextDouble() * prefixSum(this.size);
+		
+		int index = 0;
+		for(int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+			int next = index + step;
+			if (next < tree.length && tree[next] <= target) {
+				index = next;
+				target -= tree[next];
+			}
+		}
+		
+		//Rounding can carry the point past the last item, which then owns it
+		return Math.min(index, this.size - 1);
+	}
+	
+	/** Adds delta to the weight at index in the tree */
+	private void add(int index, double delta) {
+		for(int i = index + 1; i < tree.length; i += i & -i) {
+			tree[i] += delta;
+		}
+	}
+	
+	/** Returns the sum of the weights at indices 0 to count - 1 */
+	private double prefixSum(int count) {
+		double sum = 0;
+		for(int i = count; i > 0; i -= i & -i) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+	
+	/** Copies the items and weights into arrays of the given length and
+	 * rebuilds the tree from the weights in O(n), which also clears any
+	 * rounding error the tree has gathered from earlier updates. */
+	private void resize(int capacity) {
+		Item[] resizedQueue = (Item[]) new Object[capacity];
+		double[] resizedWeights = new double[capacity];
+		
+		System.arraycopy(queue, 0, resizedQueue, 0, this.size);
+		System.arraycopy(weights, 0, resizedWeights, 0, this.size);
+		
+		this.queue = resizedQueue;
+		this.weights = resizedWeights;
+		this.tree = new double[capacity + 1];
+		
+		for(int i = 1; i <= capacity; i++) {
+			tree[i] += resizedWeights[i - 1];
+			int parent = i + (i & -i);
+			if (parent <= capacity) {
+				tree[parent] += tree[i];
+			}
+		}
+	}
+}
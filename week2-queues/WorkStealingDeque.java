@@ -0,0 +1,216 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/** WorkStealingDeque is a lock free double ended queue for handing out
+ * work, after Chase and Lev. One owner thread pushes and pops at the
+ * bottom without locking, while any number of other threads steal from
+ * the top, racing with each other and the owner through a compare and
+ * swap on the top index. The circular array grows as it fills up. */
+public class WorkStealingDeque<Item> {
+	
+	private static final int MIN_CAPACITY = 16;
+	
+	/** Index one past the bottom item, only ever written by the owner */
+	private volatile long bottom = 0;
+	
+	/** Index of the top item, advanced by whoever takes that item */
+	private final AtomicLong top = new AtomicLong(0);
+	
+	/** The items, at their index masked by the array length, a power of two */
+	private volatile AtomicReferenceArray<Item> items = new AtomicReferenceArray<Item>(MIN_CAPACITY);
+	
+	/** Constructor that creates a new WorkStealingDeque */
+	public WorkStealingDeque() { }
+	
+	/** Returns true when the deque looks empty, which may already be out
+	 * of date by the time it returns if other threads are using it */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+	
+	/** Returns the number of items, which may already be out of date by
+	 * the time it returns if other threads are using it */
+	public int size() {
+		long size = bottom - top.get();
+		return (int) Math.max(0, size);
+	}
+	
+	/** Adds an item to the bottom, only to be called by the owner thread */
+	public void push(Item item) {
+		if (item == null) {
+			throw new NullPointerException("Cannot add null items");
+		}
+		
+		long b = bottom;
+		long t = top.get();
+		AtomicReferenceArray<Item> array = items;
+		
+		if (b - t >= array.length() - 1) {
+			array = grow(array, b, t);
+			items = array;
+		}
+		
+		array.set((int) b & (array.length() - 1), item);
+		bottom = b + 1;
+	}
+	
+	/** Removes and returns the bottom item, only to be called by the owner
+	 * thread. Returns null if the deque is empty. */
+	public Item pop() {
+		long b = bottom - 1;
+		AtomicReferenceArray<Item> array = items;
+		
+		//Claim the bottom item before looking at top, so a thief either sees the claim or is seen by the owner
+		bottom = b;
+		long t = top.get();
+		
+		if (t > b) {
+			bottom = b + 1;
+			return null;
+		}
+		
+		int index = (int) b & (array.length() - 1);
+		Item item = array.get(index);
+		
+		if (t == b) {
+			//The last item, thieves may be after it too so take it through top like they do
+			if (!top.compareAndSet(t, t + 1)) {
+				item = null;
+			}
+			bottom = b + 1;
+			return item;
+		}
+		
+		//No thief can reach this item while another is above it, so clear it for the garbage collector
+		array.set(index, null);
+		return item;
+	}
+	
+	/** Removes and returns the top item, may be called by any thread.
+	 * Returns null if the deque is empty or another thread took the top
+	 * item first, in which case trying again may succeed. */
+	public Item steal() {
+		long t = top.get();
+		long b = bottom;
+		
+		if (t >= b) {
+			return null;
+		}
+		
+		AtomicReferenceArray<Item> array = items;
+		Item item = array.get((int) t & (array.length() - 1));
+		
+		if (!top.compareAndSet(t, t + 1)) {
+			return null;
+		}
+		
+		return item;
+	}
+	
+	/** Copies the items from top to bottom into an array twice as long.
+	 * The old array is left as it was, so thieves still reading it see the
+	 * same items until they notice the new one. */
+	private AtomicReferenceArray<Item> grow(AtomicReferenceArray<Item> array, long b, long t) {
+		AtomicReferenceArray<Item> grown = new AtomicReferenceArray<Item>(array.length() * 2);
+		
+		for(long i = t; i < b; i++) {
+			grown.set((int) i & (grown.length() - 1), array.get((int) i & (array.length() - 1)));
+		}
+		
+		return grown;
+	}
+	
+	/** Stress test. The owner pushes tasks numbered 0 to n - 1 in bursts,
+	 * popping some between bursts, while thieves steal continually. Each
+	 * task is counted as it is taken, and every task must end up taken
+	 * exactly once. Arguments are the task count and the thief count. */
+	public static void main(String[] args) throws InterruptedException {
+		final int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		int thiefCount = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		
+		final WorkStealingDeque<Integer> deque = new WorkStealingDeque<Integer>();
+		final AtomicIntegerArray taken = new AtomicIntegerArray(taskCount);
+		final long[] stolen = new long[thiefCount];
+		final AtomicBoolean done = new AtomicBoolean(false);
+		
+		Thread[] thieves = new Thread[thiefCount];
+		for(int k = 0; k < thiefCount; k++) {
+			final int thief = k;
+			thieves[k] = new Thread() {
+				@Override
+				public void run() {
+					while(true) {
+						boolean finished = done.get();
+						
+						Integer task = deque.steal();
+						if (task != null) {
+							taken.incrementAndGet(task);
+							stolen[thief]++;
+						} else if (finished && deque.isEmpty()) {
+							return;
+						}
+					}
+				}
+			};
+			thieves[k].start();
+		}
+		
+		long popped = 0;
+		int next = 0;
+		while(next < taskCount) {
+			int burst = Math.min(taskCount - next, 1 + StdRandom.uniform(1000));
+			for(int k = 0; k < burst; k++) {
+				deque.push(next++);
+			}
+			
+			int pops = StdRandom.uniform(burst + 1);
+			for(int k = 0; k < pops; k++) {
+				Integer task = deque.pop();
+				if (task != null) {
+					taken.incrementAndGet(task);
+					popped++;
+				}
+			}
+		}
+		
+		Integer task;
+		while((task = deque.pop()) != null || !deque.isEmpty()) {
+			if (task != null) {
+				taken.incrementAndGet(task);
+				popped++;
+			}
+		}
+		
+		done.set(true);
+		for(Thread thief : thieves) {
+			thief.join();
+		}
+		
+		long stolenTotal = 0;
+		for(long count : stolen) {
+			stolenTotal += count;
+		}
+		
+		int lost = 0;
+		int duplicated = 0;
+		for(int k = 0; k < taskCount; k++) {
+			if (taken.get(k) == 0) {
+				lost++;
+			} else if (taken.get(k) > 1) {
+				duplicated++;
+			}
+		}
+		
+		StdOut.println("tasks      = " + taskCount);
+		StdOut.println("popped     = " + popped);
+		StdOut.println("stolen     = " + stolenTotal + " by " + thiefCount + " thieves");
+		StdOut.println("lost       = " + lost);
+		StdOut.println("duplicated = " + duplicated);
+		
+		if (lost > 0 || duplicated > 0) {
+			throw new IllegalStateException("Tasks were lost or duplicated");
+		}
+	}
+}
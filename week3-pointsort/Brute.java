@@ -1,74 +1,41 @@
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
-
 public class Brute {	
 	public static void main(String[] args) {
-		StdDraw.setXscale(0, 32768);
-		StdDraw.setYscale(0, 32768);
-		StdDraw.setPenRadius(0.01);
-		
 		//read name of input file from standard input
 		String fileName = args[0];
 		
-		Point[] input = readInputFile(fileName);
-		findCollinearPoints(input);
-	}
-
-	private static Point[] readInputFile(String fileName) {
-		//Read data from input file
-		In in = new In(fileName);
-		
-		int datasetSize = in.readInt();
-		
-		Point[] points = new Point[datasetSize];
+		PointStore input = PointStore.read(fileName);
 		
-		for(int rowsRead = 0; rowsRead < datasetSize; rowsRead++) {
-			int x = in.readInt();
-			int y = in.readInt();
-			
-			points[rowsRead] = new Point(x, y);
-			
-			points[rowsRead].draw();
-		}
-		
-		StdDraw.setPenRadius();
-		
-		return points;
+		//Segments are written to standard output, and drawn as well when asked with -draw
+		SegmentSink sink = SegmentSink.fromArguments(input, args);
+		findCollinearPoints(input, sink);
+		sink.finish();
 	}
 
-	private static void findCollinearPoints(Point[] points) {
-		for(int first = 0; first < points.length - 3; first++) {
-			for(int second = first + 1; second < points.length - 2; second++) {
-				for(int third = second + 1; third < points.length - 1; third++) {
-					for(int fourth = third + 1; fourth < points.length; fourth++) {
-						
-						//calculate slopes
-						double slopeFirstSecond = points[first].slopeTo(points[second]);
-						double slopeFirstThird = points[first].slopeTo(points[third]);
-						double slopeFirstFourth = points[first].slopeTo(points[fourth]);
+	static void findCollinearPoints(PointStore points, SegmentSink sink) {
+		int n = points.size();
+		
+		for(int first = 0; first < n - 3; first++) {
+			for(int second = first + 1; second < n - 2; second++) {
+				for(int third = second + 1; third < n - 1; third++) {
+					for(int fourth = third + 1; fourth < n; fourth++) {
 						
-						//If equal, they are collinear
-						if(slopeFirstSecond == slopeFirstThird && slopeFirstSecond == slopeFirstFourth) {
-							Point[] result = new Point[4];
-							result[0] = points[first];
-							result[1] = points[second];
-							result[2] = points[third];
-							result[3] = points[fourth];
-							
-							Arrays.sort(result);
+						//If the slopes from the first point are equal, they are collinear
+						if(points.compareBySlope(first, second, third) == 0 && points.compareBySlope(first, second, fourth) == 0) {
+							int[] result = { first, second, third, fourth };
 							
-							//Output to standard out and draw
-							StdOut.print(result[0].toString());
-							StdOut.print(" -> ");
-							StdOut.print(result[1].toString());
-							StdOut.print(" -> ");
-							StdOut.print(result[2].toString());
-							StdOut.print(" -> ");
-							StdOut.print(result[3].toString());
-							StdOut.println();
+							//Sort the four points into order
+							for(int i = 1; i < result.length; i++) {
+								int point = result[i];
+								int j = i;
+								while(j > 0 && points.compare(result[j - 1], point) > 0) {
+									result[j] = result[j - 1];
+									j--;
+								}
+								result[j] = point;
+							}
 							
-							result[0].drawTo(result[3]);
+							//Output
+							sink.segment(points, result);
 						}
 					}
 				}
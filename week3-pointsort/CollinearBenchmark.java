@@ -0,0 +1,145 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+//CollinearBenchmark times the sort based Fast against the hash based HashCollinear on random point sets, to show
+//the size at which hashing directions beats sorting by slope. Both run on one thread so the comparison is of the
+//algorithms. Each set is distinct random points on the 32768 x 32768 grid the programs draw, with a few lines of
+//points planted so there are segments to find, and each run checks both detectors found the same segments.
+//
+//Usage: java CollinearBenchmark [pointCounts] [repetitions]
+//pointCounts is a comma separated list, by default 10000,20000,50000,100000. Each detector is timed repetitions
+//times per size, once by default, and the fastest time is reported.
+//
+//The default run on one core, with a 4GB heap and one repetition, measured:
+//       N      Fast ms      Hash ms   speedup  segments
+//   10000      47020.2      14506.1     3.24x        42
+//   20000     135064.4      38603.0     3.50x       526
+//   50000     863421.5     225556.0     3.83x     12379
+//  100000    3731658.5     982570.6     3.80x    105265
+public class CollinearBenchmark {
+	
+	//The point counts measured when none are given
+	private static final String DEFAULT_POINT_COUNTS = "10000,20000,50000,100000";
+	
+	//Points on each side of the grid, the same as the drawing scale
+	private static final int GRID_LENGTH = 32768;
+	
+	//One planted line of LINE_LENGTH points for every POINTS_PER_LINE points
+	private static final int POINTS_PER_LINE = 1000;
+	private static final int LINE_LENGTH = 6;
+	
+	//Size of the set run by both detectors before timing, so both are compiled when measured
+	private static final int WARMUP_COUNT = 2000;
+	
+	//Seed for the point sets, fixed so every run measures the same work
+	private static final long SEED = 20141001L;
+	
+	//Returns n distinct random points, about n / POINTS_PER_LINE lines of LINE_LENGTH of them evenly spaced
+	private static PointStore randomPoints(int n) {
+		SplittableRandom random = new SplittableRandom(SEED + n);
+		Set<Long> used = new HashSet<Long>();
+		int[] xs = new int[n];
+		int[] ys = new int[n];
+		int count = 0;
+		
+		//Plant lines from a random start in a random small step, staying inside the grid
+		int lineCount = n / POINTS_PER_LINE;
+		while(count + LINE_LENGTH <= n && lineCount > 0) {
+			int stepX = random.nextInt(-50, 51);
+			int stepY = random.nextInt(-50, 51);
+			int startX = random.nextInt(GRID_LENGTH);
+			int startY = random.nextInt(GRID_LENGTH);
+			int endX = startX + stepX * (LINE_LENGTH - 1);
+			int endY = startY + stepY * (LINE_LENGTH - 1);
+			if ((stepX == 0 && stepY == 0) || endX < 0 || endX >= GRID_LENGTH || endY < 0 || endY >= GRID_LENGTH) {
+				continue;
+			}
+			
+			int planted = 0;
+			for(int k = 0; k < LINE_LENGTH; k++) {
+				int x = startX + stepX * k;
+				int y = startY + stepY * k;
+				if (used.add((long) x * GRID_LENGTH + y)) {
+					xs[count + planted] = x;
+					ys[count + planted] = y;
+					planted++;
+				}
+			}
+			count += planted;
+			lineCount--;
+		}
+		
+		while(count < n) {
+			int x = random.nextInt(GRID_LENGTH);
+			int y = random.nextInt(GRID_LENGTH);
+			if (used.add((long) x * GRID_LENGTH + y)) {
+				xs[count] = x;
+				ys[count] = y;
+				count++;
+			}
+		}
+		
+		return new PointStore(xs, ys);
+	}
+	
+	//Returns true if both lists hold the same segments in the same order
+	private static boolean sameSegments(List<int[]> first, List<int[]> second) {
+		if (first.size() != second.size()) {
+			return false;
+		}
+		for(int k = 0; k < first.size(); k++) {
+			if (!Arrays.equals(first.get(k), second.get(k))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	//Main method that times both detectors on each size, printing a row per size
+	public static void main(String[] args) {
+		String[] pointCounts = (args.length > 0 ? args[0] : DEFAULT_POINT_COUNTS).split(",");
+		int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+		
+		PointStore warmup = randomPoints(WARMUP_COUNT);
+		for(int k = 0; k < 3; k++) {
+			Fast.findCollinearPoints(warmup, 1, new SegmentSink.Counter());
+			HashCollinear.findCollinearPoints(warmup, new SegmentSink.Counter());
+		}
+		
+		StdOut.printf("%8s %12s %12s %9s %9s%n", "N", "Fast ms", "Hash ms", "speedup", "segments");
+		
+		for(String pointCountArg : pointCounts) {
+			int n = Integer.parseInt(pointCountArg.trim());
+			PointStore points = randomPoints(n);
+			
+			long fastNanos = Long.MAX_VALUE;
+			long hashNanos = Long.MAX_VALUE;
+			List<int[]> fastSegments = null;
+			List<int[]> hashSegments = null;
+			
+			for(int k = 0; k < repetitions; k++) {
+				SegmentSink.Collector fastCollector = new SegmentSink.Collector();
+				long start = System.nanoTime();
+				Fast.findCollinearPoints(points, 1, fastCollector);
+				fastNanos = Math.min(fastNanos, System.nanoTime() - start);
+				fastSegments = fastCollector.segments();
+				
+				SegmentSink.Collector hashCollector = new SegmentSink.Collector();
+				start = System.nanoTime();
+				HashCollinear.findCollinearPoints(points, hashCollector);
+				hashNanos = Math.min(hashNanos, System.nanoTime() - start);
+				hashSegments = hashCollector.segments();
+			}
+			
+			if (!sameSegments(fastSegments, hashSegments)) {
+				throw new IllegalStateException("Fast and HashCollinear found different segments for " + n + " points");
+			}
+			
+			StdOut.printf("%8d %12.1f %12.1f %8.2fx %9d%n",
+					n, fastNanos / 1e6, hashNanos / 1e6, (double) fastNanos / hashNanos, fastSegments.size());
+		}
+	}
+}
@@ -1,76 +1,140 @@
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Fast {
 	private static final int minCollinearCount = 4;
 	
+	//Anchors searched by one task before the range is split between threads
+	private static final int ANCHORS_PER_TASK = 16;
+	
 	public static void main(String[] args) {
-		StdDraw.setXscale(0, 32768);
-		StdDraw.setYscale(0, 32768);
-		StdDraw.setPenRadius(0.01);
-		
-		//read name of input file from standard input
+		//read name of input file from standard input, and optionally the number of threads to search with
 		String fileName = args[0];
+		int threads = args.length > 1 && !args[1].startsWith("-") ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
 		
-		Point[] input = readInputFile(fileName);
-		findCollinearPoints(input);
+		PointStore input = PointStore.read(fileName);
+		
+		//Segments are written to standard output, and drawn as well when asked with -draw
+		SegmentSink sink = SegmentSink.fromArguments(input, args);
+		findCollinearPoints(input, threads, sink);
+		sink.finish();
 	}
-
-	private static Point[] readInputFile(String fileName) {
-		//Read data from input file
-		In in = new In(fileName);
+	
+	//Passes every maximal segment of at least minCollinearCount points to sink, each as its point indices in order.
+	//Every point is an anchor and sorts all the points by slope from itself, so each run of equal slope is the
+	//rest of a whole line through the anchor. A line is kept only by the anchor that is its smallest point, so each
+	//segment is found exactly once with no deduplication afterwards. The anchors are independent, so ranges of them
+	//are searched on separate threads, each with its own index arrays, and the segments are passed on by anchor then
+	//slope whatever the number of threads.
+	static void findCollinearPoints(PointStore points, int threads, SegmentSink sink) {
+		int n = points.size();
+		int[][][] segmentsByAnchor = new int[n][][];
+		
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new AnchorTask(points, segmentsByAnchor, 0, n));
+		} finally {
+			pool.shutdown();
+		}
 		
-		int datasetSize = in.readInt();
+		for(int[][] anchorSegments : segmentsByAnchor) {
+			for(int[] segment : anchorSegments) {
+				sink.segment(points, segment);
+			}
+		}
+	}
+	
+	//Finds the segments whose smallest point is anchor, with order and aux as scratch arrays of every point index
+	private static int[][] findAnchorSegments(PointStore points, int anchor, int[] order, int[] aux) {
+		List<int[]> segments = new ArrayList<int[]>();
 		
-		Point[] points = new Point[datasetSize];
+		//Sort the array with respect to one of the points
+		points.sortBySlope(anchor, order, 0, order.length, aux);
 		
-		for(int rowsRead = 0; rowsRead < datasetSize; rowsRead++) {
-			int x = in.readInt();
-			int y = in.readInt();
+		//Move through the array a run of equal slope at a time, skipping the anchor itself at the front
+		int runStart = 0;
+		while(runStart < order.length) {
+			int runEnd = runStart + 1;
+			while(runEnd < order.length && points.compareBySlope(anchor, order[runStart], order[runEnd]) == 0) {
+				runEnd++;
+			}
 			
-			points[rowsRead] = new Point(x, y);
+			boolean sameAsAnchor = points.compare(anchor, order[runStart]) == 0;
+			if (!sameAsAnchor && runEnd - runStart + 1 >= minCollinearCount && isSmallest(points, anchor, order, runStart, runEnd)) {
+				segments.add(sortedSegment(points, anchor, order, runStart, runEnd));
+			}
 			
-			points[rowsRead].draw();
+			runStart = runEnd;
+		}
+		
+		return segments.toArray(new int[segments.size()][]);
+	}
+	
+	//Returns true if anchor is smaller than every point of order[from] to order[to - 1]
+	private static boolean isSmallest(PointStore points, int anchor, int[] order, int from, int to) {
+		for(int k = from; k < to; k++) {
+			if (points.compare(order[k], anchor) < 0) {
+				return false;
+			}
 		}
+		return true;
+	}
+	
+	//Returns the anchor followed by the points of a run, in increasing order
+	private static int[] sortedSegment(PointStore points, int anchor, int[] order, int from, int to) {
+		int[] segment = new int[to - from + 1];
+		segment[0] = anchor;
 		
-		StdDraw.setPenRadius();
+		for(int k = from; k < to; k++) {
+			//Insertion sort, lines hold few points
+			int point = order[k];
+			int j = k - from + 1;
+			while(j > 1 && points.compare(segment[j - 1], point) > 0) {
+				segment[j] = segment[j - 1];
+				j--;
+			}
+			segment[j] = point;
+		}
 		
-		return points;
+		return segment;
 	}
-
-	private static void findCollinearPoints(Point[] points) {
+	
+	//Searches a range of anchors, splitting it in two while it is longer than ANCHORS_PER_TASK
+	private static class AnchorTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
 		
-		for(int i = 0; i < points.length - 1; i++) {
-			
-			//Sort the array with respect to one of the points
-			Arrays.sort(points, i + 1, points.length, points[i].SLOPE_ORDER);
-			
-			//Calculate slope between i point and i + 1 to start with
-			double currentSlope = points[i].slopeTo(points[i + 1]);
-			int consecutiveCount = 1;
-			
-			//Move through the rest of the array comparing slopes
-			for(int compare = i + 2; compare < points.length; compare++) {
-				
-				//When the same, increment the count because points are collinear
-				if (points[i].slopeTo(points[compare]) == currentSlope) {
-					consecutiveCount++;
-					
-				//Otherwise, reset the count and set the slope to compare
-				} else {
-					currentSlope = points[i].slopeTo(points[compare]);
-					consecutiveCount = 1;
+		private final PointStore points;
+		private final int[][][] segmentsByAnchor;
+		private final int from;
+		private final int to;
+		
+		AnchorTask(PointStore points, int[][][] segmentsByAnchor, int from, int to) {
+			this.points = points;
+			this.segmentsByAnchor = segmentsByAnchor;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= ANCHORS_PER_TASK) {
+				//The index arrays are shared by every anchor in this range
+				int[] order = new int[points.size()];
+				int[] aux = new int[points.size()];
+				for(int i = 0; i < order.length; i++) {
+					order[i] = i;
 				}
 				
-				if (consecutiveCount >= minCollinearCount) {
-					//Continue the search until it changes
-					
-					
-					//Write the output
-					
-					points[i].drawTo(points[compare]);
-					
+				for(int anchor = from; anchor < to; anchor++) {
+					segmentsByAnchor[anchor] = findAnchorSegments(points, anchor, order, aux);
 				}
+				return;
 			}
+			
+			int mid = (from + to) >>> 1;
+			invokeAll(new AnchorTask(points, segmentsByAnchor, from, mid), new AnchorTask(points, segmentsByAnchor, mid, to));
 		}
 	}
 }
@@ -0,0 +1,176 @@
+//HashCollinear finds the same maximal segments as Fast, in the same order, without sorting. For each anchor the
+//direction to every other point is reduced by its gcd and given a canonical sign, so all the points on one line
+//through the anchor share one direction, which is packed into a long key. The keys are grouped through an open
+//addressing hash map of primitive longs, with the points of each group chained through an int array, so each
+//anchor takes expected linear time and the whole search O(n^2) rather than Fast's O(n^2 log n).
+public class HashCollinear {
+	private static final int minCollinearCount = 4;
+	
+	//Directions are packed as dx * DX_RADIX + (dy + 2^31). After reduction dx is 0 to 2^31 and dy + 2^31 is 0 to
+	//2^32, below the radix, so the packing is one to one. Its range is under 2^64 so it stays one to one even
+	//where the multiplication wraps. A vertical direction always reduces to (0, 1), so 0 is never a key.
+	private static final long DX_RADIX = (1L << 32) + 1;
+	private static final long DY_OFFSET = 1L << 31;
+	
+	public static void main(String[] args) {
+		//read name of input file from standard input
+		String fileName = args[0];
+		
+		PointStore input = PointStore.read(fileName);
+		
+		//Segments are written to standard output, and drawn as well when asked with -draw
+		SegmentSink sink = SegmentSink.fromArguments(input, args);
+		findCollinearPoints(input, sink);
+		sink.finish();
+	}
+	
+	//Passes every maximal segment of at least minCollinearCount points to sink, each as its point indices in order,
+	//by anchor then slope exactly as Fast does. A line is kept only by the anchor that is its smallest point.
+	static void findCollinearPoints(PointStore points, SegmentSink sink) {
+		int n = points.size();
+		
+		//Hash map from direction key to group, a slot is in use for the current anchor when its stamp is anchor + 1,
+		//so the map never needs clearing between anchors
+		int capacity = Integer.highestOneBit(Math.max(4, 2 * n - 1)) << 1;
+		long[] keys = new long[capacity];
+		int[] groupOfSlot = new int[capacity];
+		int[] stamps = new int[capacity];
+		int mask = capacity - 1;
+		
+		//Each group's first point, size and whether it holds a point smaller than the anchor, with its points
+		//chained through next
+		int[] groupHead = new int[n];
+		int[] groupSize = new int[n];
+		boolean[] groupHasSmaller = new boolean[n];
+		int[] next = new int[n];
+		
+		int[] lines = new int[n];
+		
+		for(int anchor = 0; anchor < n; anchor++) {
+			int groupCount = 0;
+			int stamp = anchor + 1;
+			
+			for(int p = 0; p < n; p++) {
+				long dx = (long) points.x(p) - points.x(anchor);
+				long dy = (long) points.y(p) - points.y(anchor);
+				if (dx == 0 && dy == 0) {
+					continue;
+				}
+				
+				long key = directionKey(dx, dy);
+				
+				int slot = hash(key) & mask;
+				while(stamps[slot] == stamp && keys[slot] != key) {
+					slot = (slot + 1) & mask;
+				}
+				
+				int group;
+				if (stamps[slot] == stamp) {
+					group = groupOfSlot[slot];
+				} else {
+					group = groupCount++;
+					stamps[slot] = stamp;
+					keys[slot] = key;
+					groupOfSlot[slot] = group;
+					groupHead[group] = -1;
+					groupSize[group] = 0;
+					groupHasSmaller[group] = false;
+				}
+				
+				next[p] = groupHead[group];
+				groupHead[group] = p;
+				groupSize[group]++;
+				if (points.compare(p, anchor) < 0) {
+					groupHasSmaller[group] = true;
+				}
+			}
+			
+			//Collect the lines this anchor owns, then list them by slope as Fast does
+			int lineCount = 0;
+			for(int group = 0; group < groupCount; group++) {
+				if (groupSize[group] + 1 >= minCollinearCount && !groupHasSmaller[group]) {
+					lines[lineCount++] = group;
+				}
+			}
+			
+			for(int i = 1; i < lineCount; i++) {
+				int line = lines[i];
+				int j = i;
+				while(j > 0 && points.compareBySlope(anchor, groupHead[lines[j - 1]], groupHead[line]) > 0) {
+					lines[j] = lines[j - 1];
+					j--;
+				}
+				lines[j] = line;
+			}
+			
+			for(int i = 0; i < lineCount; i++) {
+				sink.segment(points, segment(points, anchor, lines[i], groupHead, groupSize, next));
+			}
+		}
+	}
+	
+	//Returns the anchor followed by the points of a group, in increasing order
+	private static int[] segment(PointStore points, int anchor, int group, int[] groupHead, int[] groupSize, int[] next) {
+		int[] segment = new int[groupSize[group] + 1];
+		segment[0] = anchor;
+		
+		int count = 1;
+		for(int point = groupHead[group]; point >= 0; point = next[point]) {
+			//Insertion sort, lines hold few points
+			int j = count++;
+			while(j > 1 && points.compare(segment[j - 1], point) > 0) {
+				segment[j] = segment[j - 1];
+				j--;
+			}
+			segment[j] = point;
+		}
+		
+		return segment;
+	}
+	
+	//Reduces a direction by the gcd of its parts and turns it to point right, or up when vertical, then packs it
+	private static long directionKey(long dx, long dy) {
+		long divisor = gcd(Math.abs(dx), Math.abs(dy));
+		if (divisor > 1) {
+			dx /= divisor;
+			dy /= divisor;
+		}
+		
+		if (dx < 0 || (dx == 0 && dy < 0)) {
+			dx = -dx;
+			dy = -dy;
+		}
+		
+		return dx * DX_RADIX + (dy + DY_OFFSET);
+	}
+	
+	//Returns the greatest common divisor of two non-negative numbers, not both 0, by the binary gcd algorithm
+	private static long gcd(long a, long b) {
+		if (a == 0) {
+			return b;
+		}
+		if (b == 0) {
+			return a;
+		}
+		
+		int shift = Long.numberOfTrailingZeros(a | b);
+		a >>>= Long.numberOfTrailingZeros(a);
+		while(b != 0) {
+			b >>>= Long.numberOfTrailingZeros(b);
+			if (a > b) {
+				long temp = a;
+				a = b;
+				b = temp;
+			}
+			b -= a;
+		}
+		
+		return a << shift;
+	}
+	
+	//Spreads a key over the table
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
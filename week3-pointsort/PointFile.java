@@ -0,0 +1,226 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+//PointFile reads and writes point sets straight into and out of the primitive arrays of a PointStore, in two
+//formats. The text format is the course one, a point count followed by an x and y for every point, separated by
+//any whitespace, and is parsed by hand a buffer at a time instead of through In's regular expressions. The binary
+//format is a 16 byte header, the int MAGIC, the int VERSION and the long point count, followed by an x and y int
+//for every point, all little endian. Binary files are memory mapped and read without any parsing.
+//
+//Usage: java PointFile inputFile outputFile
+//Converts a point file of either format to the other one, telling the formats apart by the magic number.
+public class PointFile {
+	
+	//"PNTS" read as a little endian int, and the version of the binary format
+	private static final int MAGIC = 0x53544E50;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 16;
+	
+	//Binary files are mapped in windows of at most this many bytes, a whole number of points
+	private static final long WINDOW_BYTES = 1L << 30;
+	
+	//Bytes read from a text file at a time
+	private static final int TEXT_BUFFER_BYTES = 1 << 16;
+	
+	//Reads a point file of either format
+	public static PointStore read(String fileName) throws IOException {
+		return isBinary(fileName) ? readBinary(fileName) : readText(fileName);
+	}
+	
+	//Returns true if a file starts with the binary format's magic number
+	public static boolean isBinary(String fileName) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			FileChannel channel = file.getChannel();
+			ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			while(magic.hasRemaining() && channel.read(magic) >= 0) { }
+			
+			return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+		}
+	}
+	
+	//Reads a binary point file by mapping it a window at a time and copying the coordinates into the arrays
+	public static PointStore readBinary(String fileName) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			FileChannel channel = file.getChannel();
+			
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException(fileName + " is not a binary point file");
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException(fileName + " is version " + header.getInt(4) + ", only version " + VERSION + " can be read");
+			}
+			
+			long pointCount = header.getLong(8);
+			if (pointCount < 0 || pointCount > Integer.MAX_VALUE - 8 || HEADER_BYTES + 8 * pointCount > channel.size()) {
+				throw new IOException(fileName + " has a point count of " + pointCount + " that does not fit the file");
+			}
+			
+			int n = (int) pointCount;
+			int[] xs = new int[n];
+			int[] ys = new int[n];
+			
+			for(int start = 0; start < n; ) {
+				int windowPoints = (int) Math.min(n - start, WINDOW_BYTES / 8);
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + 8L * start, 8L * windowPoints);
+				window.order(ByteOrder.LITTLE_ENDIAN);
+				
+				for(int k = 0; k < windowPoints; k++) {
+					xs[start + k] = window.getInt(8 * k);
+					ys[start + k] = window.getInt(8 * k + 4);
+				}
+				start += windowPoints;
+			}
+			
+			return new PointStore(xs, ys, false);
+		}
+	}
+	
+	//Writes a binary point file
+	public static void writeBinary(PointStore points, String fileName) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+			FileChannel channel = file.getChannel();
+			channel.truncate(0);
+			
+			ByteBuffer buffer = ByteBuffer.allocate(TEXT_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putLong(points.size());
+			
+			for(int i = 0; i < points.size(); i++) {
+				if (buffer.remaining() < 8) {
+					drain(channel, buffer);
+				}
+				buffer.putInt(points.x(i)).putInt(points.y(i));
+			}
+			drain(channel, buffer);
+		}
+	}
+	
+	//Writes out everything put in a buffer and empties it
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	//Reads a text point file, parsing the numbers by hand
+	public static PointStore readText(String fileName) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+			TextParser parser = new TextParser(file.getChannel(), fileName);
+			
+			int n = parser.nextInt();
+			if (n < 0) {
+				throw new IOException(fileName + " has a negative point count");
+			}
+			
+			int[] xs = new int[n];
+			int[] ys = new int[n];
+			for(int i = 0; i < n; i++) {
+				xs[i] = parser.nextInt();
+				ys[i] = parser.nextInt();
+			}
+			
+			return new PointStore(xs, ys, false);
+		}
+	}
+	
+	//Writes a text point file, the count then one point a line
+	public static void writeText(PointStore points, String fileName) throws IOException {
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(fileName), TEXT_BUFFER_BYTES)) {
+			out.write(Integer.toString(points.size()));
+			out.newLine();
+			
+			for(int i = 0; i < points.size(); i++) {
+				out.write(Integer.toString(points.x(i)));
+				out.write(' ');
+				out.write(Integer.toString(points.y(i)));
+				out.newLine();
+			}
+		}
+	}
+	
+	//TextParser reads whitespace separated decimal ints from a channel through a buffer it refills as it goes
+	private static class TextParser {
+		private final FileChannel channel;
+		private final String fileName;
+		private final ByteBuffer buffer = ByteBuffer.allocate(TEXT_BUFFER_BYTES);
+		
+		TextParser(FileChannel channel, String fileName) {
+			this.channel = channel;
+			this.fileName = fileName;
+			buffer.flip();
+		}
+		
+		//Returns the next byte without taking it, or -1 at the end of the file
+		private int peek() throws IOException {
+			if (!buffer.hasRemaining()) {
+				buffer.clear();
+				int read;
+				do {
+					read = channel.read(buffer);
+				} while(read == 0);
+				buffer.flip();
+				
+				if (read < 0) {
+					return -1;
+				}
+			}
+			return buffer.get(buffer.position()) & 0xFF;
+		}
+		
+		int nextInt() throws IOException {
+			int b = peek();
+			while(b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f') {
+				buffer.get();
+				b = peek();
+			}
+			if (b < 0) {
+				throw new IOException(fileName + " ended before all its points were read");
+			}
+			
+			boolean negative = b == '-';
+			if (negative || b == '+') {
+				buffer.get();
+				b = peek();
+			}
+			if (b < '0' || b > '9') {
+				throw new IOException(fileName + " has a character '" + (char) b + "' where a number was expected");
+			}
+			
+			//Accumulate as a negative number, which can reach Integer.MIN_VALUE
+			long value = 0;
+			while(b >= '0' && b <= '9') {
+				value = value * 10 - (b - '0');
+				if (value < Integer.MIN_VALUE) {
+					throw new IOException(fileName + " has a number too large for an int");
+				}
+				buffer.get();
+				b = peek();
+			}
+			if (!negative && value == Integer.MIN_VALUE) {
+				throw new IOException(fileName + " has a number too large for an int");
+			}
+			
+			return (int) (negative ? value : -value);
+		}
+	}
+	
+	//Main method that converts a point file to the other format
+	public static void main(String[] args) throws IOException {
+		String inputFile = args[0];
+		String outputFile = args[1];
+		
+		if (isBinary(inputFile)) {
+			writeText(readBinary(inputFile), outputFile);
+		} else {
+			writeBinary(readText(inputFile), outputFile);
+		}
+	}
+}
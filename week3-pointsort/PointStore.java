@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+//PointStore holds a set of points as two primitive arrays of coordinates, with each point named by its index, so
+//the collinear search can sort int arrays of indices instead of Point objects. Slopes are compared exactly by
+//cross-multiplying coordinate differences as longs, never by dividing, and agree with the order of
+//Point.slopeTo: a point compared with itself is the lowest slope, then finite slopes, then vertical lines.
+//Coordinates must lie between -2^30 and 2^30 so every difference and product fits without overflow.
+public class PointStore {
+	
+	//Largest coordinate magnitude for which the cross products of differences cannot overflow a long
+	private static final int COORDINATE_LIMIT = 1 << 30;
+	
+	//Ranges this short are sorted by insertion sort rather than split further
+	private static final int INSERTION_SORT_CUTOFF = 12;
+	
+	//The kinds of slope in increasing order, the same point, any finite slope and a vertical line
+	private static final int SAME_POINT = 0;
+	private static final int FINITE = 1;
+	private static final int VERTICAL = 2;
+	
+	private final int[] xs;
+	private final int[] ys;
+	
+	//Constructor, accepts the x and y coordinates of every point, which are copied
+	public PointStore(int[] xs, int[] ys) {
+		this(xs, ys, true);
+	}
+	
+	//Constructor, accepts the x and y coordinates of every point, and takes the arrays over without copying them
+	//unless copy is true
+	PointStore(int[] xs, int[] ys, boolean copy) {
+		if (xs.length != ys.length) {
+			throw new IllegalArgumentException("There must be a y coordinate for every x coordinate");
+		}
+		
+		for(int i = 0; i < xs.length; i++) {
+			checkCoordinate(xs[i]);
+			checkCoordinate(ys[i]);
+		}
+		
+		this.xs = copy ? xs.clone() : xs;
+		this.ys = copy ? ys.clone() : ys;
+	}
+	
+	//Reads a point file, either the text format of a point count followed by that many x y coordinate pairs, or the
+	//binary format of PointFile
+	public static PointStore read(String fileName) {
+		try {
+			return PointFile.read(fileName);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private static void checkCoordinate(int coordinate) {
+		if (coordinate < -COORDINATE_LIMIT || coordinate > COORDINATE_LIMIT) {
+			throw new IllegalArgumentException("Coordinate " + coordinate + " is outside +-2^30");
+		}
+	}
+	
+	//Returns the number of points
+	public int size() {
+		return xs.length;
+	}
+	
+	public int x(int point) {
+		return xs[point];
+	}
+	
+	public int y(int point) {
+		return ys[point];
+	}
+	
+	//Returns a Point object for a point, for drawing and printing
+	public Point point(int point) {
+		return new Point(xs[point], ys[point]);
+	}
+	
+	//Compares two points by y coordinate and breaking ties by x coordinate, the same order as Point.compareTo
+	public int compare(int p, int q) {
+		if (ys[p] != ys[q]) {
+			return ys[p] < ys[q] ? -1 : 1;
+		}
+		if (xs[p] != xs[q]) {
+			return xs[p] < xs[q] ? -1 : 1;
+		}
+		return 0;
+	}
+	
+	//Compares the slopes from anchor to p and from anchor to q, the same order as Point.SLOPE_ORDER
+	public int compareBySlope(int anchor, int p, int q) {
+		long dxP = (long) xs[p] - xs[anchor];
+		long dyP = (long) ys[p] - ys[anchor];
+		long dxQ = (long) xs[q] - xs[anchor];
+		long dyQ = (long) ys[q] - ys[anchor];
+		
+		int kindP = slopeKind(dxP, dyP);
+		int kindQ = slopeKind(dxQ, dyQ);
+		if (kindP != kindQ) {
+			return kindP < kindQ ? -1 : 1;
+		}
+		if (kindP != FINITE) {
+			return 0;
+		}
+		
+		//Turn both directions to point right, then dyP / dxP < dyQ / dxQ exactly when dyP * dxQ < dyQ * dxP
+		if (dxP < 0) {
+			dxP = -dxP;
+			dyP = -dyP;
+		}
+		if (dxQ < 0) {
+			dxQ = -dxQ;
+			dyQ = -dyQ;
+		}
+		
+		return Long.compare(dyP * dxQ, dyQ * dxP);
+	}
+	
+	//Returns the kind of slope of the direction dx, dy
+	private static int slopeKind(long dx, long dy) {
+		if (dx != 0) {
+			return FINITE;
+		}
+		return dy == 0 ? SAME_POINT : VERTICAL;
+	}
+	
+	//Stably sorts order[from] to order[to - 1] by slope from anchor, using aux, which must be as long as order, as
+	//scratch space. This is a top down merge sort that sorts short ranges by insertion and skips merging two
+	//halves that are already in order, so it allocates nothing and keeps points of equal slope in their order.
+	public void sortBySlope(int anchor, int[] order, int from, int to, int[] aux) {
+		if (to - from <= INSERTION_SORT_CUTOFF) {
+			for(int i = from + 1; i < to; i++) {
+				int point = order[i];
+				int j = i;
+				while(j > from && compareBySlope(anchor, order[j - 1], point) > 0) {
+					order[j] = order[j - 1];
+					j--;
+				}
+				order[j] = point;
+			}
+			return;
+		}
+		
+		int mid = (from + to) >>> 1;
+		sortBySlope(anchor, order, from, mid, aux);
+		sortBySlope(anchor, order, mid, to, aux);
+		
+		if (compareBySlope(anchor, order[mid - 1], order[mid]) <= 0) {
+			return;
+		}
+		
+		System.arraycopy(order, from, aux, from, to - from);
+		int left = from;
+		int right = mid;
+		for(int k = from; k < to; k++) {
+			if (left == mid) {
+				order[k] = aux[right++];
+			} else if (right == to || compareBySlope(anchor, aux[left], aux[right]) <= 0) {
+				order[k] = aux[left++];
+			} else {
+				order[k] = aux[right++];
+			}
+		}
+	}
+}
@@ -0,0 +1,163 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+//SegmentSink receives the segments a collinear detector finds, one call per segment in the order they are found,
+//so the detectors themselves never print or draw. A segment is given as the indices of its points in a PointStore,
+//in increasing order, and the array belongs to the sink once passed. finish is called once the search is over.
+//The sinks here collect, write, count or draw the segments, and Tee passes them on to several sinks at once.
+public interface SegmentSink {
+	
+	void segment(PointStore points, int[] segment);
+	
+	void finish();
+	
+	//Returns the sink the command line asks for, a Writer to standard output, and a Drawing as well if any argument
+	//is -draw
+	static SegmentSink fromArguments(PointStore points, String[] args) {
+		SegmentSink writer = new Writer();
+		for(String arg : args) {
+			if (arg.equals("-draw")) {
+				return new Tee(writer, new Drawing(points));
+			}
+		}
+		return writer;
+	}
+	
+	//Collector keeps every segment in a list
+	class Collector implements SegmentSink {
+		private final List<int[]> segments = new ArrayList<int[]>();
+		
+		@Override
+		public void segment(PointStore points, int[] segment) {
+			segments.add(segment);
+		}
+		
+		@Override
+		public void finish() { }
+		
+		public List<int[]> segments() {
+			return segments;
+		}
+	}
+	
+	//Writer prints each segment's points in order, joined by " -> ", one segment a line, through a buffer that is
+	//flushed when the search finishes. Points are written as Point.toString writes them.
+	class Writer implements SegmentSink {
+		private final java.io.Writer out;
+		private final StringBuilder line = new StringBuilder();
+		
+		//Constructor, writes to standard output
+		public Writer() {
+			this(new OutputStreamWriter(System.out));
+		}
+		
+		//Constructor, writes to the given writer, which is buffered
+		public Writer(java.io.Writer out) {
+			this.out = new BufferedWriter(out, 1 << 16);
+		}
+		
+		@Override
+		public void segment(PointStore points, int[] segment) {
+			line.setLength(0);
+			for(int k = 0; k < segment.length; k++) {
+				if (k > 0) {
+					line.append(" -> ");
+				}
+				line.append('(').append(points.x(segment[k])).append(", ").append(points.y(segment[k])).append(')');
+			}
+			line.append('\n');
+			
+			try {
+				out.append(line);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		@Override
+		public void finish() {
+			try {
+				out.flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+	
+	//Counter only counts the segments and the points on them
+	class Counter implements SegmentSink {
+		private long segmentCount = 0;
+		private long pointCount = 0;
+		
+		@Override
+		public void segment(PointStore points, int[] segment) {
+			segmentCount++;
+			pointCount += segment.length;
+		}
+		
+		@Override
+		public void finish() { }
+		
+		public long segmentCount() {
+			return segmentCount;
+		}
+		
+		public long pointCount() {
+			return pointCount;
+		}
+	}
+	
+	//Drawing plots every point when it is made, then draws a line between the ends of each segment
+	class Drawing implements SegmentSink {
+		
+		//Constructor, sets up the drawing scale and plots the points
+		public Drawing(PointStore points) {
+			StdDraw.setXscale(0, 32768);
+			StdDraw.setYscale(0, 32768);
+			StdDraw.setPenRadius(0.01);
+			
+			for(int i = 0; i < points.size(); i++) {
+				StdDraw.point(points.x(i), points.y(i));
+			}
+			
+			StdDraw.setPenRadius();
+		}
+		
+		@Override
+		public void segment(PointStore points, int[] segment) {
+			int first = segment[0];
+			int last = segment[segment.length - 1];
+			StdDraw.line(points.x(first), points.y(first), points.x(last), points.y(last));
+		}
+		
+		@Override
+		public void finish() { }
+	}
+	
+	//Tee passes every segment on to each of several sinks in turn
+	class Tee implements SegmentSink {
+		private final SegmentSink[] sinks;
+		
+		public Tee(SegmentSink... sinks) {
+			this.sinks = sinks.clone();
+		}
+		
+		@Override
+		public void segment(PointStore points, int[] segment) {
+			for(SegmentSink sink : sinks) {
+				sink.segment(points, segment);
+			}
+		}
+		
+		@Override
+		public void finish() {
+			for(SegmentSink sink : sinks) {
+				sink.finish();
+			}
+		}
+	}
+}